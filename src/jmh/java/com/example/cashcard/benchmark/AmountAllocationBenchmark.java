@@ -0,0 +1,151 @@
+package com.example.cashcard.benchmark;
+
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.dto.CashCardResponseDTO;
+import com.example.cashcard.model.CashCard;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garbage per request of the amount handling, minor units against the Double model it replaced
+ * (kept here as Legacy* classes): mapping a page of 20 entities to response DTOs and writing them
+ * as JSON, and reading a POST /cashcards body. Run it with the GC profiler and compare
+ * gc.alloc.rate.norm:
+ * <pre>
+ * mvn -Pbenchmark -DskipTests verify -Djmh.args="-prof gc AmountAllocationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmountAllocationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    public static class LegacyCashCard {
+        private final Long id;
+        private final Double amount;
+
+        LegacyCashCard(Long id, Double amount) {
+            this.id = id;
+            this.amount = amount;
+        }
+    }
+
+    public static class LegacyResponseDTO {
+        private Long id;
+        private Double amount;
+
+        public LegacyResponseDTO(Long id, Double amount) {
+            this.id = id;
+            this.amount = amount;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Double getAmount() {
+            return amount;
+        }
+    }
+
+    public static class LegacyRequestDTO {
+        private Double amount;
+
+        public Double getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+    }
+
+    // discards the bytes and survives the close() of every writeValue
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private ObjectWriter legacyWriter;
+    private ObjectWriter minorUnitsWriter;
+    private ObjectReader legacyReader;
+    private ObjectReader minorUnitsReader;
+    private List<LegacyCashCard> legacyPage;
+    private List<CashCard> minorUnitsPage;
+    private byte[] requestBody;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        legacyWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, LegacyResponseDTO.class));
+        minorUnitsWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, CashCardResponseDTO.class));
+        legacyReader = objectMapper.readerFor(LegacyRequestDTO.class);
+        minorUnitsReader = objectMapper.readerFor(CashCardRequestDTO.class);
+        legacyPage = new ArrayList<>(PAGE_SIZE);
+        minorUnitsPage = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            long amount = ThreadLocalRandom.current().nextLong(1, 100_000);
+            legacyPage.add(new LegacyCashCard(1000L + i, amount / 100.0));
+            minorUnitsPage.add(new CashCard(1000L + i, amount, "owner"));
+        }
+        requestBody = "{\"amount\":123.45}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void legacyResponse() throws Exception {
+        List<LegacyResponseDTO> page = new ArrayList<>(PAGE_SIZE);
+        for (LegacyCashCard card : legacyPage) {
+            page.add(new LegacyResponseDTO(card.id, card.amount));
+        }
+        legacyWriter.writeValue(sink, page);
+    }
+
+    @Benchmark
+    public void minorUnitsResponse() throws Exception {
+        List<CashCardResponseDTO> page = new ArrayList<>(PAGE_SIZE);
+        for (CashCard card : minorUnitsPage) {
+            page.add(new CashCardResponseDTO(card.getId(), card.getAmount()));
+        }
+        minorUnitsWriter.writeValue(sink, page);
+    }
+
+    @Benchmark
+    public Object legacyRequest() throws Exception {
+        return legacyReader.readValue(requestBody);
+    }
+
+    @Benchmark
+    public Object minorUnitsRequest() throws Exception {
+        return minorUnitsReader.readValue(requestBody);
+    }
+}
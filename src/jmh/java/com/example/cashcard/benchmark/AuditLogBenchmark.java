@@ -0,0 +1,85 @@
+package com.example.cashcard.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.example.cashcard.audit.AuditEvent;
+import com.example.cashcard.audit.AuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request thread overhead of recording a mutation: publishing a typed event to the {@link AuditLog}
+ * ring buffer versus the synchronous file appender call it replaces. Both write to the same file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AuditLogBenchmark {
+
+    private AuditLog auditLog;
+    private Logger synchronousLogger;
+    private FileAppender<ILoggingEvent> appender;
+
+    @Setup
+    public void setUp() {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%d %-5level [%thread] %logger : %msg%n");
+        encoder.start();
+        appender = new FileAppender<>();
+        appender.setContext(loggerContext);
+        appender.setFile("target/audit-benchmark.log");
+        appender.setAppend(false);
+        appender.setEncoder(encoder);
+        appender.start();
+
+        Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.detachAndStopAllAppenders();
+        root.addAppender(appender);
+        root.setLevel(Level.INFO);
+        synchronousLogger = loggerContext.getLogger("cashcard.synchronous");
+
+        auditLog = new AuditLog(8192, 512, Duration.ofMillis(10), new SimpleMeterRegistry());
+        auditLog.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        auditLog.stop();
+        appender.stop();
+    }
+
+    @Benchmark
+    public boolean publishAuditEvent() {
+        return auditLog.publish(new AuditEvent.CashCardUpdated(System.currentTimeMillis(), "sarah1", 99L, 1999L));
+    }
+
+    @Benchmark
+    public void synchronousLogLine() {
+        synchronousLogger.info("UPDATE owner={} id={} amount={}", "sarah1", 99L, 1999L);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.cashcard.benchmark;
+
+import com.example.cashcard.CashcardApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the application on a random port with its own in-memory H2 database, or on an H2 file
+ * database with the durable profile, for benchmarks that call the service layer directly.
+ */
+final class BenchmarkApplication {
+
+    static final int OWNERS = 1000;
+
+    private static final long SEED_CHUNK = 1_000_000;
+
+    private BenchmarkApplication() {}
+
+    static ConfigurableApplicationContext start(String database, String... args) {
+        List<String> arguments = new ArrayList<>(List.of("--spring.datasource.url=jdbc:h2:mem:" + database));
+        arguments.addAll(Arrays.asList(args));
+        return run(arguments);
+    }
+
+    /**
+     * Start with the durable profile on the database file at {@code path}, created on the first start.
+     */
+    static ConfigurableApplicationContext startDurable(Path path, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.profiles.active=durable",
+                "--cashcard.durable.path=" + path.toAbsolutePath()));
+        arguments.addAll(Arrays.asList(args));
+        return run(arguments);
+    }
+
+    private static ConfigurableApplicationContext run(List<String> args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.cashcard=WARN",
+                "--logging.level.org.springframework.security=WARN"));
+        arguments.addAll(args);
+        return new SpringApplicationBuilder(CashcardApplication.class)
+                .run(arguments.toArray(String[]::new));
+    }
+
+    /**
+     * Insert {@code rows} cashcards spread over {@link #OWNERS} owners named owner-0 to owner-999,
+     * with amounts between 0.01 and 1000.00 (1 to 100000 minor units). They are inserted a million
+     * per statement, and the id sequence is moved past them so cards created afterwards get new ids.
+     */
+    static void seed(ConfigurableApplicationContext context, long rows) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        for (long from = 1; from <= rows; from += SEED_CHUNK) {
+            jdbcTemplate.update("INSERT INTO cash_card(id, amount, owner) "
+                    + "SELECT 1000 + X, CAST(RAND() * 100000 AS BIGINT) + 1, 'owner-' || MOD(X, " + OWNERS + ") "
+                    + "FROM SYSTEM_RANGE(?, ?)", from, Math.min(rows, from + SEED_CHUNK - 1));
+        }
+        // pooled optimizer: the value read from the sequence is the last id of a block of 50
+        jdbcTemplate.execute("ALTER SEQUENCE cash_card_seq RESTART WITH (SELECT MAX(id) + 50 FROM cash_card)");
+        jdbcTemplate.update("INSERT INTO owner_summary(owner, card_count, total_amount, min_amount, max_amount) "
+                + "SELECT owner, COUNT(*), SUM(amount), MIN(amount), MAX(amount) FROM cash_card "
+                + "WHERE owner LIKE 'owner-%' GROUP BY owner");
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.cashcard.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cashcards created per second over HTTP: {@value #CARDS} POST /cashcards one after the other,
+ * against one POST /cashcards/batch of {@value #CARDS} cards. Both are counted per card.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CashCardCreateBenchmark {
+
+    private static final int CARDS = 100;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest single;
+    private HttpRequest batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // the relay publishes the events of the created cards like in production
+        context = BenchmarkApplication.start("create-benchmark");
+        String base = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8));
+        client = HttpClient.newHttpClient();
+        single = HttpRequest.newBuilder(URI.create(base + "/cashcards"))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":12.34}"))
+                .build();
+        StringJoiner cards = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < CARDS; i++) {
+            cards.add("{\"amount\":12.34}");
+        }
+        batch = HttpRequest.newBuilder(URI.create(base + "/cashcards/batch"))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cards.toString()))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CARDS)
+    public int singlePosts() throws Exception {
+        int status = 0;
+        for (int i = 0; i < CARDS; i++) {
+            status = created(single);
+        }
+        return status;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CARDS)
+    public int batchPost() throws Exception {
+        return created(batch);
+    }
+
+    private int created(HttpRequest request) throws Exception {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("HTTP " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.cashcard.benchmark;
+
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardResponseDTO;
+import com.example.cashcard.model.CashCard;
+import com.example.cashcard.service.CashCardService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service hot paths against an in-memory H2 seeded with 10k, 1M and 10M cashcards.
+ * Run a single size with {@code -Djmh.args="-p rows=10000 CashCardServiceBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CashCardServiceBenchmark {
+
+    private static final String OWNER = "owner-7";
+    private static final int BULK_SIZE = 100;
+
+    @Param({"10000", "1000000", "10000000"})
+    public long rows;
+
+    private ConfigurableApplicationContext context;
+    private CashCardService cashCardService;
+    private Pageable firstPage;
+    private Pageable amountPage;
+    private List<CashCardBulkUpdateDTO> bulkA;
+    private List<CashCardBulkUpdateDTO> bulkB;
+    private boolean flip;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("service-benchmark-" + rows);
+        BenchmarkApplication.seed(context, rows);
+        cashCardService = context.getBean(CashCardService.class);
+        firstPage = PageRequest.of(0, 20);
+        amountPage = PageRequest.of(0, 20);
+
+        List<Long> ids = context.getBean(JdbcTemplate.class).queryForList(
+                "SELECT id FROM cash_card WHERE owner = ? ORDER BY id LIMIT ?", Long.class, OWNER, BULK_SIZE);
+        bulkA = new ArrayList<>(ids.size());
+        bulkB = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            bulkA.add(new CashCardBulkUpdateDTO(id, 1000L));
+            bulkB.add(new CashCardBulkUpdateDTO(id, 2000L));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwner() {
+        return cashCardService.findByOwner(firstPage, OWNER);
+    }
+
+    @Benchmark
+    public void bulkUpdate() {
+        // alternate the amounts so every invocation really writes
+        flip = !flip;
+        cashCardService.bulkUpdate(flip ? bulkA : bulkB, OWNER);
+    }
+
+    @Benchmark
+    public List<CashCardResponseDTO> findByAmountRange() {
+        return cashCardService.findByAmountRange(10_000, 20_000, amountPage);
+    }
+}
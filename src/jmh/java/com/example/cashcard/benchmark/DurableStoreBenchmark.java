@@ -0,0 +1,113 @@
+package com.example.cashcard.benchmark;
+
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.model.CashCard;
+import com.example.cashcard.service.CashCardService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state service hot paths with the cards in memory ({@code store=mem}) and in the H2 file
+ * database of the durable profile ({@code store=file}).
+ * <p>
+ * The file database is seeded once, under {@code -Dcashcard.benchmark.dir} (target/durable-benchmark
+ * by default), and reused by the later runs; delete it after an interrupted seed. Run a smaller size
+ * with {@code -Djmh.args="-p rows=1000000 DurableStoreBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DurableStoreBenchmark {
+
+    private static final String OWNER = "owner-7";
+
+    @Param({"mem", "file"})
+    public String store;
+
+    @Param({"10000000"})
+    public long rows;
+
+    private ConfigurableApplicationContext context;
+    private CashCardService cashCardService;
+    private Pageable firstPage;
+    private Pageable amountPage;
+    private CashCardRequestDTO card;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = start(store, rows);
+        cashCardService = context.getBean(CashCardService.class);
+        firstPage = PageRequest.of(0, 20);
+        amountPage = PageRequest.of(0, 20);
+        card = new CashCardRequestDTO(4200L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Start on a store holding {@code rows} seeded cards: a fresh in-memory database is seeded on
+     * every start, the file database only on its first start.
+     */
+    static ConfigurableApplicationContext start(String store, long rows) {
+        if (store.equals("mem")) {
+            ConfigurableApplicationContext context = BenchmarkApplication.start("durable-benchmark-" + rows);
+            BenchmarkApplication.seed(context, rows);
+            return context;
+        }
+        ConfigurableApplicationContext context = BenchmarkApplication.startDurable(file(rows));
+        long seeded = context.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT COUNT(*) FROM cash_card WHERE owner LIKE 'owner-%'", Long.class);
+        if (seeded == 0) {
+            BenchmarkApplication.seed(context, rows);
+        } else if (seeded < rows) {
+            context.close();
+            throw new IllegalStateException("Seed of " + file(rows) + " incomplete, delete it and run again");
+        }
+        return context;
+    }
+
+    static Path file(long rows) {
+        return Path.of(System.getProperty("cashcard.benchmark.dir", "target/durable-benchmark"), "cashcard-" + rows);
+    }
+
+    @Benchmark
+    public Page<CashCard> findByOwner() {
+        return cashCardService.findByOwner(firstPage, OWNER);
+    }
+
+    @Benchmark
+    public List<?> findByAmountRange() {
+        return cashCardService.findByAmountRange(10_000, 20_000, amountPage);
+    }
+
+    @Benchmark
+    public CashCard createCashCard() {
+        return cashCardService.createCashCard(card, OWNER);
+    }
+}
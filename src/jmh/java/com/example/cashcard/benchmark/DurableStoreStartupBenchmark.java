@@ -0,0 +1,58 @@
+package com.example.cashcard.benchmark;
+
+import com.example.cashcard.model.CashCard;
+import com.example.cashcard.service.CashCardService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start: time from starting the application until the first page of an owner's cards is
+ * read, with {@code rows} cards to serve. The in-memory store has to insert them again on every
+ * start, the durable file store opens the file left by the previous start (seeded in the setup).
+ * Each fork measures a few starts of a JVM that has already started once, not a new process.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DurableStoreStartupBenchmark {
+
+    @Param({"mem", "file"})
+    public String store;
+
+    @Param({"10000000"})
+    public long rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (store.equals("file")) {
+            DurableStoreBenchmark.start(store, rows).close();
+        }
+    }
+
+    @Benchmark
+    public Page<CashCard> startAndReadFirstPage() {
+        try (ConfigurableApplicationContext context = store.equals("file")
+                ? BenchmarkApplication.startDurable(DurableStoreBenchmark.file(rows))
+                : DurableStoreBenchmark.start(store, rows)) {
+            return context.getBean(CashCardService.class).findByOwner(PageRequest.of(0, 20), "owner-7");
+        }
+    }
+}
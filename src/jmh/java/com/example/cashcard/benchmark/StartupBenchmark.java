@@ -0,0 +1,199 @@
+package com.example.cashcard.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Time to first request: from launching a new process until {@code GET /cashcards/99} of sarah1
+ * answers 200, so Security, JPA and Jackson are all up. Each mode runs the packaged application:
+ * <ul>
+ *     <li>{@code jar}: the fat jar, as the Dockerfile does</li>
+ *     <li>{@code aot}: the fat jar with {@code -Dspring.aot.enabled=true}, packaged with {@code -Paot}</li>
+ *     <li>{@code cds}: the classes and libraries extracted into plain jars, started from a CDS archive
+ *     recorded by a training run, as Dockerfile.cds does</li>
+ *     <li>{@code aot-cds}: both, packaged with {@code -Paot}</li>
+ *     <li>{@code native}: the executable target/cashcard, packaged with {@code -Pnative} on GraalVM</li>
+ * </ul>
+ * A mode whose build is missing fails in its setup and the next one runs. Run
+ * {@code mvn -Paot,benchmark -DskipTests verify -Djmh.args="StartupBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String MAIN_CLASS = "com.example.cashcard.CashcardApplication";
+    private static final Path TARGET = Path.of("target");
+    private static final Path WORK = TARGET.resolve("startup-benchmark");
+
+    @Param({"jar", "aot", "cds", "aot-cds", "native"})
+    public String mode;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private List<String> command;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Files.createDirectories(WORK);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> aot = mode.startsWith("aot") ? List.of("-Dspring.aot.enabled=true") : List.of();
+        command = new ArrayList<>();
+        switch (mode) {
+            case "jar", "aot" -> {
+                command.add(java);
+                command.addAll(aot);
+                command.addAll(List.of("-jar", fatJar().toString()));
+            }
+            case "cds", "aot-cds" -> {
+                String classPath = extract(WORK.resolve(mode));
+                Path archive = WORK.resolve(mode).resolve("cashcard.jsa");
+                // training run: the context is refreshed, then the JVM exits and dumps the loaded classes
+                List<String> training = new ArrayList<>(List.of(java, "-XX:ArchiveClassesAtExit=" + archive,
+                        "-Dspring.context.exit=onRefresh"));
+                training.addAll(aot);
+                training.addAll(List.of("-cp", classPath, MAIN_CLASS));
+                Process dump = new ProcessBuilder(training)
+                        .redirectErrorStream(true)
+                        .redirectOutput(WORK.resolve(mode + "-training.log").toFile())
+                        .start();
+                if (dump.waitFor() != 0 || !Files.exists(archive)) {
+                    throw new IllegalStateException("CDS training run failed, see " + WORK.resolve(mode + "-training.log"));
+                }
+                command.addAll(List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:auto"));
+                command.addAll(aot);
+                command.addAll(List.of("-cp", classPath, MAIN_CLASS));
+            }
+            case "native" -> {
+                Path executable = TARGET.resolve("cashcard");
+                if (!Files.isExecutable(executable)) {
+                    throw new IllegalStateException(executable + " not found, package with -Pnative on a GraalVM JDK");
+                }
+                command.add(executable.toString());
+            }
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        process = new ProcessBuilder(arguments)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(WORK.resolve(mode + ".log").toFile()))
+                .start();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/99"))
+                .header("Authorization", "Basic " + Base64.getEncoder()
+                        .encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8)))
+                .build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(mode + " exited with " + process.exitValue() + ", see " + WORK.resolve(mode + ".log"));
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return response.statusCode();
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static Path fatJar() throws IOException {
+        try (Stream<Path> files = Files.list(TARGET)) {
+            return files.filter(file -> file.getFileName().toString().matches("cashcard-.*\\.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No cashcard jar in target, run the package phase"));
+        }
+    }
+
+    /**
+     * Split the fat jar into a jar of the application classes and the library jars next to it: a
+     * CDS archive only holds classes loaded from plain jars by the application class loader.
+     * @return the class path of the extracted jars
+     */
+    private static String extract(Path directory) throws IOException {
+        Path lib = directory.resolve("lib");
+        Files.createDirectories(lib);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        Path application = directory.resolve("cashcard.jar");
+        List<String> classPath = new ArrayList<>(List.of(application.toString()));
+        try (JarFile fatJar = new JarFile(fatJar().toFile());
+             JarOutputStream classes = new JarOutputStream(Files.newOutputStream(application), manifest)) {
+            for (JarEntry entry : fatJar.stream().sorted(Comparator.comparing(JarEntry::getName)).toList()) {
+                String name = entry.getName();
+                if (name.startsWith("BOOT-INF/lib/") && !entry.isDirectory()) {
+                    Path library = lib.resolve(name.substring("BOOT-INF/lib/".length()));
+                    try (InputStream in = fatJar.getInputStream(entry)) {
+                        Files.copy(in, library, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    classPath.add(library.toString());
+                } else if (name.startsWith("BOOT-INF/classes/") && name.length() > "BOOT-INF/classes/".length()) {
+                    classes.putNextEntry(new JarEntry(name.substring("BOOT-INF/classes/".length())));
+                    try (InputStream in = fatJar.getInputStream(entry)) {
+                        in.transferTo(classes);
+                    }
+                    classes.closeEntry();
+                }
+            }
+        }
+        return String.join(File.pathSeparator, classPath);
+    }
+}
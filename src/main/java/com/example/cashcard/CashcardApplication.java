@@ -1,9 +1,14 @@
 package com.example.cashcard;
 
+import com.example.cashcard.config.CashCardRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(CashCardRuntimeHints.class)
 public class CashcardApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,69 @@
+package com.example.cashcard.audit;
+
+import com.example.cashcard.money.Amounts;
+
+/**
+ * Audit trail entry of a cashcard mutation. Events are small immutable values built on the request
+ * thread, they are only formatted by the background writer of {@link AuditLog}.
+ */
+public sealed interface AuditEvent {
+
+    long timestamp();
+
+    String owner();
+
+    void appendTo(StringBuilder line);
+
+    record CashCardCreated(long timestamp, String owner, Long id, long amount) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("CREATE owner=").append(owner).append(" id=").append(id).append(" amount=");
+            Amounts.append(line, amount);
+        }
+    }
+
+    record CashCardUpdated(long timestamp, String owner, Long id, long amount) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("UPDATE owner=").append(owner).append(" id=").append(id).append(" amount=");
+            Amounts.append(line, amount);
+        }
+    }
+
+    record CashCardDeleted(long timestamp, String owner, Long id) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("DELETE owner=").append(owner).append(" id=").append(id);
+        }
+    }
+
+    record CashCardsBatchCreated(long timestamp, String owner, int count) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("BULK_CREATE owner=").append(owner).append(" count=").append(count);
+        }
+    }
+
+    record CashCardsBulkUpdated(long timestamp, String owner, int count) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("BULK_UPDATE owner=").append(owner).append(" count=").append(count);
+        }
+    }
+
+    record CashCardsBulkDeleted(long timestamp, String owner, int count) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("BULK_DELETE owner=").append(owner).append(" count=").append(count);
+        }
+    }
+
+    record CashCardsTransferred(long timestamp, String owner, Long fromId, Long toId, long amount) implements AuditEvent {
+        @Override
+        public void appendTo(StringBuilder line) {
+            line.append("TRANSFER owner=").append(owner).append(" from=").append(fromId).append(" to=").append(toId)
+                    .append(" amount=");
+            Amounts.append(line, amount);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.cashcard.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit trail. Request threads {@link #publish(AuditEvent)} into a bounded lock-free ring
+ * buffer and return at once, a background writer drains it in batches and writes each batch with a
+ * single call to the "cashcard.audit" logger, so the file appender is only ever used by one thread.
+ * <p>
+ * Overflow policy: when the buffer is full the new event is dropped, never blocking the request. Drops
+ * are counted in {@code cashcard.audit.dropped} and reported in the next batch written.
+ */
+@Component
+public class AuditLog implements SmartLifecycle {
+
+    private static final Logger auditLogger = LoggerFactory.getLogger("cashcard.audit");
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private final AuditRingBuffer<AuditEvent> buffer;
+    private final int batchSize;
+    private final long idleWaitNanos;
+    private final Counter dropped;
+    private long droppedReported;
+    private volatile boolean running;
+    private Thread writer;
+
+    public AuditLog(@Value("${cashcard.audit.capacity:8192}") int capacity,
+                    @Value("${cashcard.audit.batch-size:512}") int batchSize,
+                    @Value("${cashcard.audit.idle-wait:10ms}") Duration idleWait,
+                    MeterRegistry meterRegistry) {
+        this.buffer = new AuditRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.idleWaitNanos = idleWait.toNanos();
+        this.dropped = Counter.builder("cashcard.audit.dropped")
+                .description("Audit events dropped because the audit buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("cashcard.audit.pending", buffer, AuditRingBuffer::size)
+                .description("Audit events waiting for the background writer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue an event for the audit trail, never blocks.
+     * @return false if the event was dropped because the buffer is full
+     */
+    public boolean publish(AuditEvent event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("audit-writer").daemon().start(this::drainLoop);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(Duration.ofSeconds(5).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        StringBuilder lines = new StringBuilder(batchSize * 64);
+        while (running) {
+            if (drainOnce(batch, lines) == 0) {
+                LockSupport.parkNanos(idleWaitNanos);
+            }
+        }
+        // flush what was published before shutdown
+        while (drainOnce(batch, lines) > 0) {
+            // keep draining
+        }
+    }
+
+    private int drainOnce(List<AuditEvent> batch, StringBuilder lines) {
+        int drained = buffer.drainTo(batch, batchSize);
+        long droppedTotal = (long) dropped.count();
+        if (drained == 0 && droppedTotal == droppedReported) {
+            return 0;
+        }
+        try {
+            for (AuditEvent event : batch) {
+                lines.append('\n').append(Instant.ofEpochMilli(event.timestamp())).append(' ');
+                event.appendTo(lines);
+            }
+            if (droppedTotal != droppedReported) {
+                lines.append('\n').append(droppedTotal - droppedReported).append(" audit events dropped, buffer full");
+                droppedReported = droppedTotal;
+            }
+            auditLogger.info("{} audit events{}", drained, lines);
+        } catch (RuntimeException e) {
+            log.error("Could not write {} audit events", drained, e);
+        } finally {
+            batch.clear();
+            lines.setLength(0);
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.cashcard.config;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Refuses to start an AOT-processed jar or a native executable with other bean-switching settings
+ * than the ones it was built with.
+ * <p>
+ * Spring AOT evaluates the bean conditions at build time: the profiles and the properties read by
+ * {@code ShardingConfig}, {@code ReadReplicaConfig}, {@code SchemaInitializationConfig}, the
+ * idempotency stores and {@code VirtualThreadPinningMonitor} are frozen in the generated code, and
+ * changing them at runtime would silently be ignored. {@link AotConditionsRecorder} writes them to
+ * {@value #RESOURCE} during the build, this check compares them with the environment of the start
+ * once the config files are loaded. Build for other settings with {@code -Dcashcard.aot.profiles=...}.
+ */
+public class AotConditionsCheck implements EnvironmentPostProcessor, Ordered {
+
+    static final String RESOURCE = "META-INF/cashcard/aot-conditions.properties";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!AotDetector.useGeneratedArtifacts()) {
+            return;
+        }
+        Properties built = load();
+        if (built == null) {
+            return;
+        }
+        Properties started = capture(environment);
+        if (!built.equals(started)) {
+            throw new IllegalStateException("The ahead-of-time build only supports the settings it was built with "
+                    + built + ", but started with " + started
+                    + ": rebuild with -Dcashcard.aot.profiles=<profiles> or start without -Dspring.aot.enabled=true");
+        }
+    }
+
+    /**
+     * The settings that decide which of the application's beans exist.
+     */
+    static Properties capture(Environment environment) {
+        Properties conditions = new Properties();
+        String[] profiles = environment.getActiveProfiles().clone();
+        Arrays.sort(profiles);
+        conditions.setProperty("profiles", String.join(",", profiles));
+        conditions.setProperty("cashcard.idempotency.store", environment.getProperty("cashcard.idempotency.store", "memory"));
+        conditions.setProperty("cashcard.sql.init.only-if-missing", environment.getProperty("cashcard.sql.init.only-if-missing", "false"));
+        conditions.setProperty("spring.threads.virtual.enabled", environment.getProperty("spring.threads.virtual.enabled", "false"));
+        // only whether the urls are set switches beans, the urls themselves may differ
+        conditions.setProperty("cashcard.sharding.urls", isSet(environment, "cashcard.sharding.urls"));
+        conditions.setProperty("cashcard.datasource.replica.jdbc-url", isSet(environment, "cashcard.datasource.replica.jdbc-url"));
+        return conditions;
+    }
+
+    private static String isSet(Environment environment, String key) {
+        return StringUtils.hasText(environment.getProperty(key)) ? "set" : "unset";
+    }
+
+    private static Properties load() {
+        ClassPathResource resource = new ClassPathResource(RESOURCE);
+        if (!resource.exists()) {
+            return null;
+        }
+        try {
+            return PropertiesLoaderUtils.loadProperties(resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        // after the config files, which activate profiles and set the properties
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.cashcard.config;
+
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Writes the bean-switching settings of the AOT build next to the generated code, for
+ * {@link AotConditionsCheck} to compare at startup.
+ */
+public class AotConditionsRecorder implements BeanFactoryInitializationAotProcessor {
+
+    @Override
+    public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+        Properties conditions = AotConditionsCheck.capture(beanFactory.getBean(Environment.class));
+        return (generationContext, beanFactoryInitializationCode) -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                conditions.store(bytes, "bean conditions of the AOT build");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            generationContext.getGeneratedFiles().addResourceFile(AotConditionsCheck.RESOURCE,
+                    new ByteArrayResource(bytes.toByteArray()));
+            generationContext.getRuntimeHints().resources().registerPattern(AotConditionsCheck.RESOURCE);
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.cashcard.config;
+
+import com.example.cashcard.dto.AuthTokenResponseDTO;
+import com.example.cashcard.dto.BulkJobDTO;
+import com.example.cashcard.dto.CashCardAnalyticsDTO;
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardChangeDTO;
+import com.example.cashcard.dto.CashCardChangesDTO;
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.dto.CashCardResponseDTO;
+import com.example.cashcard.dto.CashCardScrollResponseDTO;
+import com.example.cashcard.dto.CashCardTransferDTO;
+import com.example.cashcard.dto.FilterParamDTO;
+import com.example.cashcard.dto.OwnerSummaryDTO;
+import com.example.cashcard.model.CashCard;
+import com.example.cashcard.model.OwnerSummary;
+import com.example.cashcard.money.AmountDeserializer;
+import com.example.cashcard.money.AmountSerializer;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/**
+ * Reflection the native image and the AOT-processed JVM cannot find out from the bean definitions.
+ * <p>
+ * Controller parameters and return types get binding hints from Spring on their own, but the DTOs
+ * are also written and read by hand (NDJSON export, bulk body parser, change stream, request
+ * fingerprints), so every one of them is registered for Jackson. Their fields are registered too,
+ * Hibernate Validator reads the constraint annotations from them. The serializers named by
+ * {@link com.example.cashcard.money.Amount} are created by Jackson through their no-arg constructor.
+ */
+public class CashCardRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> JSON_TYPES = List.of(
+            CashCard.class,
+            OwnerSummary.class,
+            AuthTokenResponseDTO.class,
+            BulkJobDTO.class,
+            CashCardAnalyticsDTO.class,
+            CashCardAnalyticsDTO.Percentile.class,
+            CashCardAnalyticsDTO.Bucket.class,
+            CashCardAnalyticsDTO.OwnerBalance.class,
+            CashCardBulkUpdateDTO.class,
+            CashCardChangeDTO.class,
+            CashCardChangesDTO.class,
+            CashCardRequestDTO.class,
+            CashCardResponseDTO.class,
+            CashCardScrollResponseDTO.class,
+            CashCardTransferDTO.class,
+            FilterParamDTO.class,
+            OwnerSummaryDTO.class);
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+        for (Class<?> type : JSON_TYPES) {
+            bindingHints.registerReflectionHints(hints.reflection(), type);
+            hints.reflection().registerType(type, MemberCategory.DECLARED_FIELDS);
+        }
+        for (Class<?> type : List.of(AmountSerializer.class, AmountDeserializer.class)) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.cashcard.config;
+
+import com.example.cashcard.datasource.ReadYourWritesDataSource;
+import com.example.cashcard.datasource.RecentWriters;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read replica routing, on when {@code cashcard.datasource.replica.jdbc-url} is set.
+ * <p>
+ * The application DataSource is a {@link LazyConnectionDataSourceProxy}: a transaction only takes
+ * a pooled connection at its first statement, once the transaction manager has marked it read-only
+ * or not. Read-write transactions and work outside a transaction use the primary pool
+ * ({@code spring.datasource.*}), {@code @Transactional(readOnly = true)} ones the replica pool
+ * ({@code cashcard.datasource.replica.*}, Hikari properties), except for a principal that has just
+ * written, see {@link RecentWriters}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("cashcard.datasource.replica.jdbc-url")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("cashcard.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    public RecentWriters recentWriters(@Value("${cashcard.datasource.read-your-writes.window:5s}") Duration window,
+                                       @Value("${cashcard.datasource.read-your-writes.maximum-size:100000}") long maximumSize) {
+        return new RecentWriters(window, maximumSize);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+                                 RecentWriters recentWriters) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(new ReadYourWritesDataSource(primaryDataSource, replicaDataSource, recentWriters));
+        return dataSource;
+    }
+}
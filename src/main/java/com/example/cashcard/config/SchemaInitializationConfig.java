@@ -0,0 +1,25 @@
+package com.example.cashcard.config;
+
+import com.example.cashcard.datasource.SchemaIfMissingInitializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Schema initialization of a durable database, on with {@code cashcard.sql.init.only-if-missing=true}:
+ * the {@code spring.sql.init} scripts only run on the first start, see
+ * {@link SchemaIfMissingInitializer}. The shards have their own initializer, which does the same
+ * on each shard.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("${cashcard.sql.init.only-if-missing:false} and '${cashcard.sharding.urls:}' == ''")
+public class SchemaInitializationConfig {
+
+    @Bean
+    public SchemaIfMissingInitializer schemaIfMissingInitializer(DataSource dataSource, Environment environment) {
+        return new SchemaIfMissingInitializer(dataSource, SchemaIfMissingInitializer.settings(environment));
+    }
+}
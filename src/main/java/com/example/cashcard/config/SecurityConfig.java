@@ -1,7 +1,13 @@
 package com.example.cashcard.config;
 
+import com.example.cashcard.security.AuthenticationCache;
+import com.example.cashcard.security.BearerTokenAuthenticationFilter;
+import com.example.cashcard.security.CachingAuthenticationProvider;
+import com.example.cashcard.security.InvalidatingUserDetailsManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -11,20 +17,24 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AuthenticationCache authenticationCache) throws Exception {
         http.authorizeHttpRequests(request -> request
                 .requestMatchers("/").permitAll()
                 .requestMatchers("/h2-console/**").hasRole("ADMIN") // only admin role can log in to db
+                .requestMatchers("/actuator/**").hasRole("ADMIN") // metrics are for operators only
                 .requestMatchers("/cashcards/**").hasRole("CARD-OWNER")
                 .anyRequest().authenticated()) // enable RBAC role base access control:.
                 .httpBasic(Customizer.withDefaults())
+                .addFilterBefore(new BearerTokenAuthenticationFilter(authenticationCache), BasicAuthenticationFilter.class)
                 .csrf(csrf -> csrf.disable())
                 .headers(headers -> headers.frameOptions(frame -> frame.sameOrigin())); //️ for H2 console
         return http.build();
@@ -35,8 +45,22 @@ public class SecurityConfig {
         return new BCryptPasswordEncoder();
     }
 
+    /**
+     * Basic logins are checked against the users with BCrypt, the verified ones are then served from
+     * the {@link AuthenticationCache} for {@code cashcard.auth.cache.ttl}.
+     */
     @Bean
-    public UserDetailsService testOnlyUsers(PasswordEncoder passwordEncoder){
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService,
+                                                         PasswordEncoder passwordEncoder,
+                                                         AuthenticationCache authenticationCache) {
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        return new CachingAuthenticationProvider(daoAuthenticationProvider, authenticationCache);
+    }
+
+    @Bean
+    public UserDetailsManager testOnlyUsers(PasswordEncoder passwordEncoder, AuthenticationCache authenticationCache){
         User.UserBuilder users = User.builder();
         UserDetails sarah = users.username("sarah1")
                 .password(passwordEncoder.encode("abc123"))
@@ -57,6 +81,8 @@ public class SecurityConfig {
                 .password(passwordEncoder.encode("xin"))
                 .roles("ADMIN","CARD-OWNER")
                 .build();
-        return new InMemoryUserDetailsManager(sarah,hankOwnsNoCards,kumar,xin);
+        // changing a user drops its cached logins and tokens
+        return new InvalidatingUserDetailsManager(
+                new InMemoryUserDetailsManager(sarah,hankOwnsNoCards,kumar,xin), authenticationCache);
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.example.cashcard.config;
+
+import com.example.cashcard.datasource.SchemaIfMissingInitializer;
+import com.example.cashcard.sharding.ShardFilter;
+import com.example.cashcard.sharding.ShardRoutingDataSource;
+import com.example.cashcard.sharding.ShardSchemaInitializer;
+import com.example.cashcard.sharding.Shards;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owner sharding, on when {@code cashcard.sharding.urls} lists the JDBC urls of the shards.
+ * <p>
+ * The application DataSource is a {@link LazyConnectionDataSourceProxy} over a
+ * {@link ShardRoutingDataSource}: a transaction only takes a pooled connection at its first
+ * statement, from the pool of the shard its thread is bound to by then. The shard pools share the
+ * {@code spring.datasource.*} credentials and driver and hold up to
+ * {@code cashcard.sharding.maximum-pool-size} connections each. It cannot be combined with the
+ * read replica.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("cashcard.sharding.urls")
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties,
+                                                         @Value("${cashcard.sharding.urls}") List<String> urls,
+                                                         @Value("${cashcard.sharding.maximum-pool-size:10}") int maximumPoolSize) {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource shard = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setMaximumPoolSize(maximumPoolSize);
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardSchemaInitializer shardSchemaInitializer(DataSource dataSource, Environment environment, Shards shards) {
+        return new ShardSchemaInitializer(dataSource, SchemaIfMissingInitializer.settings(environment), shards);
+    }
+
+    @Bean
+    public ShardFilter shardFilter(Shards shards) {
+        return new ShardFilter(shards);
+    }
+
+    /**
+     * Runs the tasks of the application executor (bulk jobs, streamed exports) on the shard of the
+     * request that submitted them.
+     */
+    @Bean
+    public TaskDecorator shardTaskDecorator() {
+        return Shards::bindToCurrentShard;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.cashcard.config;
+
+import com.example.cashcard.money.AmountFormatterFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addFormatterForFieldAnnotation(new AmountFormatterFactory()); // ?min=1.50 -> 150 minor units
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.cashcard.controller;
+
+import com.example.cashcard.dto.AuthTokenResponseDTO;
+import com.example.cashcard.security.AuthenticationCache;
+import com.example.cashcard.security.BearerTokenAuthentication;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/auth")
+@SecurityRequirement(name = "basicAuth")
+public class AuthTokenController {
+
+    private final AuthenticationCache authenticationCache;
+    private final Duration tokenTtl;
+    private static final Logger log = LoggerFactory.getLogger(AuthTokenController.class);
+
+    @Autowired
+    public AuthTokenController(AuthenticationCache authenticationCache,
+                               @Value("${cashcard.auth.token.ttl:15m}") Duration tokenTtl) {
+        this.authenticationCache = authenticationCache;
+        this.tokenTtl = tokenTtl;
+    }
+
+    /**
+     * Exchange the Basic credentials of the request for an opaque bearer token. Send it back as
+     * {@code Authorization: Bearer <token>} to skip the password check until it expires or the
+     * user changes. A bearer token cannot renew itself, so a token lives at most
+     * {@code cashcard.auth.token.ttl} after the password was last checked.
+     * @param authentication current authenticated user
+     * @return Http 200 - the token and its lifetime in seconds
+     *         Http 401 - not authenticated
+     *         Http 403 - authenticated by a bearer token instead of Basic credentials
+     */
+    @PostMapping("/token")
+    @Operation(summary = "Issue a bearer token for the authenticated user")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Token issued",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AuthTokenResponseDTO.class))),
+            @ApiResponse(responseCode = "401", description = "Not authenticated"),
+            @ApiResponse(responseCode = "403", description = "Authenticated by a bearer token")
+    })
+    public ResponseEntity<AuthTokenResponseDTO> issueToken(Authentication authentication) {
+        log.debug("Method issueToken() starts.");
+        if (authentication instanceof BearerTokenAuthentication) {
+            throw new AccessDeniedException("a token is only issued for Basic credentials");
+        }
+        String token = authenticationCache.issueToken(authentication);
+        log.debug("Method issueToken() ends.");
+        return ResponseEntity.ok(new AuthTokenResponseDTO(token, tokenTtl.toSeconds()));
+    }
+}
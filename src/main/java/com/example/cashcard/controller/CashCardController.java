@@ -1,31 +1,69 @@
 package com.example.cashcard.controller;
 
+import com.example.cashcard.dto.BulkJobDTO;
+import com.example.cashcard.dto.BulkRequestReader;
+import com.example.cashcard.dto.CashCardAnalyticsDTO;
+import com.example.cashcard.dto.CashCardChangesDTO;
 import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardCursor;
 import com.example.cashcard.dto.CashCardRequestDTO;
 import com.example.cashcard.dto.CashCardResponseDTO;
+import com.example.cashcard.dto.CashCardScrollResponseDTO;
+import com.example.cashcard.dto.CashCardTransferDTO;
 import com.example.cashcard.dto.FilterParamDTO;
+import com.example.cashcard.dto.OwnerSummaryDTO;
+import com.example.cashcard.idempotency.FingerprintingInputStream;
+import com.example.cashcard.idempotency.IdempotencyService;
+import com.example.cashcard.outbox.ChangeFeed;
 import com.example.cashcard.model.CashCard;
+import com.example.cashcard.service.AmountHistogram;
+import com.example.cashcard.service.BulkJob;
+import com.example.cashcard.service.BulkJobService;
+import com.example.cashcard.service.CashCardAnalytics;
+import com.example.cashcard.service.CashCardMetrics;
 import com.example.cashcard.service.CashCardService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import jakarta.websocket.server.PathParam;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Pageable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -38,18 +76,45 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 @SecurityRequirement(name = "basicAuth")
 public class CashCardController {
 
+    private static final int MAX_WINDOW_SIZE = 1000;
+    private static final int MAX_ANALYTICS_BUCKETS = 1000;
+    private static final int MAX_TOP_OWNERS = 1000;
+    private static final int MAX_CHANGES = 1000;
+    private static final int MAX_BATCH_CREATE = 10000;
+    static final String APPROXIMATE_COUNT_HEADER = "X-Approximate-Count";
+
     private final CashCardService cashCardService;
+    private final CashCardMetrics cashCardMetrics;
+    private final ObjectMapper objectMapper;
+    private final AmountHistogram amountHistogram;
+    private final IdempotencyService idempotencyService;
+    private final BulkJobService bulkJobService;
+    private final CashCardAnalytics cashCardAnalytics;
+    private final ChangeFeed changeFeed;
     private static final Logger log = LoggerFactory.getLogger(CashCardController.class);
     @Autowired
-    public CashCardController (CashCardService cashCardService){
+    public CashCardController (CashCardService cashCardService, CashCardMetrics cashCardMetrics,
+                               ObjectMapper objectMapper, AmountHistogram amountHistogram,
+                               IdempotencyService idempotencyService, BulkJobService bulkJobService,
+                               CashCardAnalytics cashCardAnalytics, ChangeFeed changeFeed){
         this.cashCardService = cashCardService;
+        this.cashCardMetrics = cashCardMetrics;
+        this.objectMapper = objectMapper;
+        this.amountHistogram = amountHistogram;
+        this.idempotencyService = idempotencyService;
+        this.bulkJobService = bulkJobService;
+        this.cashCardAnalytics = cashCardAnalytics;
+        this.changeFeed = changeFeed;
     }
 
     /**
-     * Retrieve a single cash card.
+     * Retrieve a single cash card. The ETag header carries the version of the card, a request whose
+     * If-None-Match still holds it gets a 304 without a body.
      * @param requestedId
      * @param principal authenticated user.
+     * @param webRequest evaluates the If-None-Match header
      * @return Http 200 if success
+     *         Http 304 if the card did not change since the If-None-Match ETag
      *         Http 404 if not found or authenticated user is not the owner of the card.
      */
     @GetMapping("/{requestedId}")
@@ -58,45 +123,91 @@ public class CashCardController {
             @ApiResponse(responseCode = "200", description = "Found the cash card",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = CashCardResponseDTO.class))),
+            @ApiResponse(responseCode = "304", description = "Cash card not modified since the If-None-Match ETag"),
             @ApiResponse(responseCode = "404", description = "Cash card not found, or not owned",
                     content = @Content(mediaType = "application/json"))
     })
-    public ResponseEntity<CashCardResponseDTO> findById(@PathVariable Long requestedId, Principal principal) {
-        log.info("Method findById() starts.");
+    public ResponseEntity<CashCardResponseDTO> findById(@PathVariable Long requestedId, Principal principal,
+                                                        WebRequest webRequest) {
+        log.debug("Method findById() starts.");
 
         Optional<CashCard> cashCardOptional = cashCardService.findByIdAndOwner(requestedId, principal.getName());
-        log.info("Cashcard {} is requested.",requestedId);
+        log.debug("Cashcard {} is requested.",requestedId);
         if (cashCardOptional.isPresent()) {
             CashCard cashCard = cashCardOptional.get();
+            String eTag = eTag(cashCard);
+            if (webRequest.checkNotModified(eTag)) {
+                // 304 and the ETag header are already set, nothing is serialized
+                log.debug("Method findById() ends with not modified.");
+                return null;
+            }
             CashCardResponseDTO cashCardResponseDTO = new CashCardResponseDTO(cashCard.getId(),cashCard.getAmount());
-            log.info("Method findById() ends with success.");
-            return ResponseEntity.ok(cashCardResponseDTO);
+            log.debug("Method findById() ends with success.");
+            return ResponseEntity.ok().eTag(eTag).body(cashCardResponseDTO);
         }
-        log.info("Method findById() ends with unsuccessful.");
+        log.debug("Method findById() ends with unsuccessful.");
         return ResponseEntity.notFound().build();
     }
 
     /**
      * Create a cashcard, ID is automatically generated, owner is current authenticated user.
+     * A retry with the same Idempotency-Key gets the response of the first request and does not
+     * create another card.
      * @param cashCardRequestDTO Request body received in the http request
      * @param ucb Spring injected uro builder
      * @param principal Current authenticated user
+     * @param idempotencyKey client generated key of the request, optional
      * @return Http 201 with location header
      *         Http 400 invalid create data
+     *         Http 422 the Idempotency-Key was used for another body
      */
     @PostMapping
     @Operation(summary = "Create a CashCard")
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "CashCard created"),
-            @ApiResponse(responseCode = "400", description = "Invalid amount entered")
+            @ApiResponse(responseCode = "400", description = "Invalid amount entered"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key already used for another request")
     })
-    public ResponseEntity<Void> createCashCard (@Valid @RequestBody CashCardRequestDTO cashCardRequestDTO, UriComponentsBuilder ucb, Principal principal){
-        log.info("Method createCashCard() starts.");
-        CashCard cashCard = cashCardService.createCashCard(cashCardRequestDTO, principal.getName());
-        URI location = ucb.path("cashcards/{id}").buildAndExpand(cashCard.getId()).toUri();
-        log.info("Cashcard {} is created",cashCard.getId());
-        log.info("Method createCashCard() ends.");
-        return ResponseEntity.created(location).build();
+    public ResponseEntity<Void> createCashCard (@Valid @RequestBody CashCardRequestDTO cashCardRequestDTO, UriComponentsBuilder ucb, Principal principal,
+                                                @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey){
+        log.debug("Method createCashCard() starts.");
+        ResponseEntity<Void> response = idempotencyService.execute(principal.getName(), "POST /cashcards", idempotencyKey,
+                cashCardRequestDTO, () -> {
+                    CashCard cashCard = cashCardService.createCashCard(cashCardRequestDTO, principal.getName());
+                    URI location = ucb.path("cashcards/{id}").buildAndExpand(cashCard.getId()).toUri();
+                    log.debug("Cashcard {} is created",cashCard.getId());
+                    return ResponseEntity.created(location).build();
+                });
+        log.debug("Method createCashCard() ends.");
+        return response;
+    }
+
+    /**
+     * Create many cashcards in one request and one transaction, the ids come from a pooled
+     * sequence and the rows are inserted with JDBC batches. Either every card is created or none.
+     * @param cashCardRequestDTOS amounts of the new cashcards, at most 10000
+     * @param principal Current authenticated user
+     * @return Http 201 with the ids of the new cashcards, in the order of the list
+     *         Http 400 invalid amount, empty or too long list
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Create a batch of CashCards")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "CashCards created, returns their ids"),
+            @ApiResponse(responseCode = "400", description = "Invalid amount entered, empty or too long list")
+    })
+    public ResponseEntity<List<Long>> createCashCards(
+            // the constraint on the list turns on method validation, which also validates every element
+            @Valid @Size(max = MAX_BATCH_CREATE, message = "At most " + MAX_BATCH_CREATE + " cashcards can be created in one batch")
+            @RequestBody List<@Valid CashCardRequestDTO> cashCardRequestDTOS, Principal principal){
+        log.debug("Method createCashCards() starts.");
+        if (cashCardRequestDTOS.isEmpty()){
+            cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_CREATE, CashCardMetrics.REJECTED_EMPTY);
+            return ResponseEntity.badRequest().build();
+        }
+        List<Long> ids = cashCardService.createCashCards(cashCardRequestDTOS, principal.getName());
+        log.debug("Method createCashCards() ends after {} cashcards.", ids.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(ids);
     }
 
     /**
@@ -112,66 +223,307 @@ public class CashCardController {
             @ApiResponse(responseCode = "200", description = "CashCards found"),
     })
     public ResponseEntity<Iterable<CashCardResponseDTO>> findAll(Pageable pageable, Principal principal){
-        log.info("Method findAll() starts.");
+        log.debug("Method findAll() starts.");
         Page<CashCard> page = cashCardService.findByOwner(pageable, principal.getName());
         List<CashCardResponseDTO> responseDTO = page.map(card -> new CashCardResponseDTO(card.getId(),card.getAmount())).getContent();
-        log.info("Cashcard list of {}", principal.getName());
-        log.info("Method findAll() ends.");
+        log.debug("Cashcard list of {}", principal.getName());
+        log.debug("Method findAll() ends.");
         return ResponseEntity.ok(responseDTO);
 
     }
 
 
     /**
-     * Update a cashcard.
+     * Retrieve a window of cashcards that current authenticated user owns with keyset pagination,
+     * sorted by amount descending. Send an empty after parameter for the first window, then the
+     * next cursor of the previous response. No count query is run, so deep windows are as fast as
+     * the first one.
+     * @param after opaque cursor from the previous response, empty for the first window
+     * @param size maximum number of cashcards in the window
+     * @param principal Current authenticated user
+     * @return Http 200 - the cashcards and the cursor of the next window, next is null on the last window
+     *         Http 400 - the cursor is invalid
+     */
+    @GetMapping(params = "after")
+    @Operation(summary = "Scroll through the CashCards with a cursor")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "CashCards found"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor")
+    })
+    public ResponseEntity<CashCardScrollResponseDTO> scroll(@RequestParam String after,
+                                                            @RequestParam(defaultValue = "20") int size,
+                                                            Principal principal){
+        log.debug("Method scroll() starts.");
+        int windowSize = Math.min(Math.max(size, 1), MAX_WINDOW_SIZE);
+        Window<CashCard> window = cashCardService.scrollByOwner(principal.getName(), CashCardCursor.decode(after), windowSize);
+        log.debug("Method scroll() ends.");
+        return ResponseEntity.ok(toScrollResponse(window));
+    }
+
+    private static CashCardScrollResponseDTO toScrollResponse(Window<CashCard> window) {
+        List<CashCardResponseDTO> content = window.map(card -> new CashCardResponseDTO(card.getId(), card.getAmount())).getContent();
+        String next = null;
+        if (window.hasNext()) {
+            CashCard last = window.getContent().get(window.size() - 1);
+            next = new CashCardCursor(last.getAmount(), last.getId()).encode();
+        }
+        return new CashCardScrollResponseDTO(content, next);
+    }
+
+    /**
+     * Export every cashcard the current authenticated user owns as newline delimited JSON, one
+     * cashcard per line ordered by id. The cards are streamed from the database to the response,
+     * nothing is collected in memory.
+     * @param principal Current authenticated user
+     * @return Http 200 - application/x-ndjson body, empty if the user has no cashcards
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all CashCards as NDJSON")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "CashCards exported",
+                    content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            schema = @Schema(implementation = CashCardResponseDTO.class)))
+    })
+    public ResponseEntity<StreamingResponseBody> export(Principal principal){
+        log.debug("Method export() starts.");
+        String owner = principal.getName();
+        ObjectWriter writer = objectMapper.writerFor(CashCardResponseDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // Spring flushes and closes the response
+                cashCardService.exportByOwner(owner, card -> {
+                    try {
+                        writer.writeValue(generator, card);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        log.debug("Method export() ends.");
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Summarize the cashcards the current authenticated user owns: count, sum, min and max amount.
+     * It is served from totals kept up to date on every change, the cards are not read.
+     * @param principal Current authenticated user
+     * @return Http 200 - the summary, count 0 and no min or max if the user has no cashcards
+     */
+    @GetMapping("/summary")
+    @Operation(summary = "Get the count, sum, min and max amount of the CashCards")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Summary of the CashCards",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = OwnerSummaryDTO.class)))
+    })
+    public ResponseEntity<OwnerSummaryDTO> summary(Principal principal){
+        log.debug("Method summary() starts.");
+        OwnerSummaryDTO summary = cashCardService.summarize(principal.getName());
+        log.debug("Method summary() ends.");
+        return ResponseEntity.ok(summary);
+    }
+
+    /**
+     * Update a cashcard. With an If-Match header the card is only updated if its current ETag is
+     * one of the listed ones, so a client cannot overwrite a change it has not seen.
      * @param requestedId Cashcard ID
      * @param cashCardRequestDTO Updating data of the cashcard
      * @param principle Current authenticated user
-     * @return Http 204 Not Content if update success, no body is returned in the response.
+     * @param ifMatch ETags from a previous GET, optional
+     * @return Http 204 Not Content if update success, no body is returned in the response, the ETag header has the new version.
      *         Http 404 Not Found if the requested cashcard is not exist, or current authenticated user is not the owner.
      *         Http 400 Invalid update data.
+     *         Http 412 Precondition Failed if the card was modified since the If-Match ETag.
      */
     @PutMapping("/{requestedId}")
     @Operation(summary = "Update an existing CashCard")
     @ApiResponses({
             @ApiResponse(responseCode = "204", description = "CashCard updated successfully"),
             @ApiResponse(responseCode = "404", description = "CashCard not found or not owned"),
-            @ApiResponse(responseCode = "400", description = "Invalid update data")
+            @ApiResponse(responseCode = "400", description = "Invalid update data"),
+            @ApiResponse(responseCode = "409", description = "CashCard updated concurrently, retry"),
+            @ApiResponse(responseCode = "412", description = "CashCard modified since the If-Match ETag")
     })
     public ResponseEntity<Void> putCashCard(@PathVariable Long requestedId,
-                                            @Valid @RequestBody CashCardRequestDTO cashCardRequestDTO, Principal principle){
-        log.info("Method putCashCard() starts.");
+                                            @Valid @RequestBody CashCardRequestDTO cashCardRequestDTO, Principal principle,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        log.debug("Method putCashCard() starts.");
 
-        boolean success = cashCardService.updateCashCard(requestedId, cashCardRequestDTO ,principle.getName());
-        if (success) {
-            log.info("Cashcard {} is updated.", requestedId);
+        Optional<CashCard> updated = cashCardService.updateCashCard(requestedId, cashCardRequestDTO ,principle.getName(),
+                expectedVersions(ifMatch));
+        if (updated.isPresent()) {
+            log.debug("Cashcard {} is updated.", requestedId);
         } else {
-            log.info("Cashcard {} is not updated", requestedId);
+            log.debug("Cashcard {} is not updated", requestedId);
         }
-        log.info("Method putCashCard() ends.");
-        return success? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        log.debug("Method putCashCard() ends.");
+        return updated.isPresent() ? ResponseEntity.noContent().eTag(eTag(updated.get())).build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private static String eTag(CashCard cashCard) {
+        return "\"" + cashCard.getVersion() + "\"";
+    }
+
+    /**
+     * Versions listed in an If-Match header. If-Match compares strongly, so weak and malformed
+     * ETags never match.
+     * @return null if any version is accepted (no header or *), otherwise the listed versions
+     */
+    private static List<Long> expectedVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        List<Long> versions = new ArrayList<>();
+        for (String eTag : ifMatch.split(",")) {
+            eTag = eTag.trim();
+            if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+                try {
+                    versions.add(Long.parseLong(eTag.substring(1, eTag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // not one of ours, cannot match
+                }
+            }
+        }
+        return versions;
     }
 
     /**
-     * Bulk update the cashcards
-     * @param cashCardBulkUpdateDTOS
+     * Bulk update the cashcards. The body is parsed while it is read and applied in chunks, it is
+     * never held in memory as a whole. A retry with the same Idempotency-Key is answered from the
+     * first request without applying the updates again.
+     * @param body JSON array of {@link CashCardBulkUpdateDTO}
      * @param principal
+     * @param idempotencyKey client generated key of the request, optional
      * @return 204 no content, ignore if the user tried to delete cashcards that do not belong
      */
     @PutMapping("/bulk")
     @Operation(summary="Bulk update cashcards")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(mediaType = "application/json",
+            array = @ArraySchema(schema = @Schema(implementation = CashCardBulkUpdateDTO.class))))
     @ApiResponses({
             @ApiResponse(responseCode = "204", description = "CashCards update successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid update data or empty list"),
-            @ApiResponse(responseCode = "404", description = "One or more cashcards do not exsit or are not owned")
+            @ApiResponse(responseCode = "404", description = "One or more cashcards do not exsit or are not owned"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key already used for another request")
     })
-    public ResponseEntity<Void> putCashcardBulk(
-            @Valid @RequestBody List<@Valid CashCardBulkUpdateDTO> cashCardBulkUpdateDTOS, Principal principal){
-        if (cashCardBulkUpdateDTOS.isEmpty()){
-            return ResponseEntity.badRequest().build();
+    public ResponseEntity<Void> putCashcardBulk(InputStream body, Principal principal,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey){
+        return streamBulk(body, idempotencyKey, "PUT /cashcards/bulk", principal, reader -> {
+            if (cashCardService.bulkUpdate(reader, principal.getName()) == 0){
+                cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_UPDATE, CashCardMetrics.REJECTED_EMPTY);
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    /**
+     * Run a bulk request on its streamed body, through the idempotency check if a key is given.
+     */
+    private ResponseEntity<Void> streamBulk(InputStream body, String idempotencyKey, String operation, Principal principal,
+                                            Function<BulkRequestReader, ResponseEntity<Void>> request){
+        if (idempotencyKey == null) {
+            return request.apply(bulkReader(body));
+        }
+        FingerprintingInputStream fingerprinted = new FingerprintingInputStream(body);
+        return idempotencyService.execute(principal.getName(), operation, idempotencyKey, fingerprinted::fingerprint,
+                () -> request.apply(bulkReader(fingerprinted)));
+    }
+
+    private BulkRequestReader bulkReader(InputStream body){
+        try {
+            JsonParser parser = objectMapper.getFactory().createParser(body);
+            // the container owns the request stream, and a fingerprint may still read it
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return new BulkRequestReader(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        cashCardService.bulkUpdate(cashCardBulkUpdateDTOS, principal.getName());
-        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Bulk update the cashcards in the background, for lists too large for one request. The body
+     * is copied to a temporary file as it is read, at most {@code cashcard.jobs.max-items} updates,
+     * then the updates are applied in chunks, each committed on its own, poll the job for the outcome.
+     * @param body JSON array of {@link CashCardBulkUpdateDTO}
+     * @param principal
+     * @param ucb Spring injected uri builder
+     * @return 202 with the job and its location
+     */
+    @PutMapping(value = "/bulk", params = "async=true")
+    @Operation(summary="Bulk update cashcards in a background job")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(mediaType = "application/json",
+            array = @ArraySchema(schema = @Schema(implementation = CashCardBulkUpdateDTO.class))))
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Bulk update job queued"),
+            @ApiResponse(responseCode = "400", description = "Invalid update data, empty list or more updates than cashcard.jobs.max-items"),
+            @ApiResponse(responseCode = "429", description = "Too many bulk jobs running for the user")
+    })
+    public ResponseEntity<BulkJobDTO> putCashcardBulkAsync(InputStream body, Principal principal,
+            UriComponentsBuilder ucb){
+        return bulkJobService.submitUpdate(bulkReader(body), principal.getName())
+                .map(job -> accepted(job, ucb))
+                .orElseGet(() -> {
+                    cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_UPDATE, CashCardMetrics.REJECTED_EMPTY);
+                    return ResponseEntity.badRequest().build();
+                });
+    }
+
+    /**
+     * Progress of a background bulk job.
+     * @param jobId id returned when the job was submitted
+     * @param principal Current authenticated user
+     * @return 200 with the status and the number of items processed
+     *         404 if the job is unknown, expired or submitted by another user
+     */
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Get the progress of a bulk job")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Found the job"),
+            @ApiResponse(responseCode = "404", description = "Job not found, expired or not owned")
+    })
+    public ResponseEntity<BulkJobDTO> findJob(@PathVariable UUID jobId, Principal principal){
+        return bulkJobService.find(jobId, principal.getName())
+                .map(job -> ResponseEntity.ok(toDTO(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private ResponseEntity<BulkJobDTO> accepted(BulkJob job, UriComponentsBuilder ucb){
+        URI location = ucb.path("cashcards/jobs/{id}").buildAndExpand(job.getId()).toUri();
+        return ResponseEntity.accepted().location(location).body(toDTO(job));
+    }
+
+    private static BulkJobDTO toDTO(BulkJob job){
+        return new BulkJobDTO(job.getId(), job.getType().name(), job.getStatus().name(), job.getTotal(),
+                job.getProcessed(), job.getError());
+    }
+
+    /**
+     * Transfer an amount between two cashcards of the user, both balances change atomically.
+     * @param cashCardTransferDTO source id, target id and amount
+     * @param principal Current authenticated user
+     * @return Http 200 with the source and the target cashcard after the transfer
+     */
+    @PostMapping("/transfers")
+    @Operation(summary="Transfer an amount between two cashcards")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Transfer done, returns the source and target cashcards"),
+            @ApiResponse(responseCode = "400", description = "Invalid transfer data, same cashcard or insufficient amount"),
+            @ApiResponse(responseCode = "404", description = "One of the cashcards does not exist or is not owned"),
+            @ApiResponse(responseCode = "409", description = "Cashcards stayed locked by concurrent transfers, retry later")
+    })
+    public ResponseEntity<List<CashCardResponseDTO>> transferCashCards(
+            @Valid @RequestBody CashCardTransferDTO cashCardTransferDTO, Principal principal){
+        log.debug("Method transferCashCards() starts.");
+        List<CashCardResponseDTO> cashCards = cashCardService.transfer(cashCardTransferDTO, principal.getName()).stream()
+                .map(card -> new CashCardResponseDTO(card.getId(), card.getAmount())).toList();
+        log.debug("Method transferCashCards() ends.");
+        return ResponseEntity.ok(cashCards);
     }
 
     /**
@@ -189,47 +541,82 @@ public class CashCardController {
             @ApiResponse(responseCode = "404", description = "CashCard not found or not owned")
     })
     public ResponseEntity<Void> deleteCashCard(@PathVariable Long requestedId, Principal principal){
-        log.info("Method deleteCashCard() starts.");
+        log.debug("Method deleteCashCard() starts.");
 
         boolean success = cashCardService.deleteCashCard(requestedId,principal.getName());
         if (success) {
-            log.info("Cashcard {} is deleted.", requestedId);
+            log.debug("Cashcard {} is deleted.", requestedId);
         } else {
-            log.info("Cashcard {} is not deleted", requestedId);
+            log.debug("Cashcard {} is not deleted", requestedId);
         }
-        log.info("Method deleteCashCard() ends.");
+        log.debug("Method deleteCashCard() ends.");
         return success? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
 
     /**
      * Bulk delete cash cards. do not delete anything if not exist or not owned
-     * @param ids List of ids to be deleted
+     * The ids are parsed while the body is read and deleted in chunks, the body is never held in
+     * memory as a whole.
+     * @param body JSON array of ids to be deleted
      * @param principal
      * @return 404 if not found or not owner
      *         204 if successful
      */
     @DeleteMapping("/bulk")
     @Operation(summary = "Bulk delete cashcards")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(mediaType = "application/json",
+            array = @ArraySchema(schema = @Schema(implementation = Long.class))))
     @ApiResponses({
             @ApiResponse(responseCode = "204", description = "CashCards deleted successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid ids passed or empty list"),
             @ApiResponse(responseCode = "404", description = "One or more cashCards not found or not owned ")
     })
-    public ResponseEntity<Void> deleteCashCardBulk(@Valid @RequestBody List<Long> ids, Principal principal){
-        log.info("Method deleteCashCardBulk() starts.");
-        if (ids.isEmpty()){
+    public ResponseEntity<Void> deleteCashCardBulk(InputStream body, Principal principal){
+        log.debug("Method deleteCashCardBulk() starts.");
+        int deleted = cashCardService.bulkDeleteCashCard(bulkReader(body), principal.getName());
+        if (deleted == 0){
+            cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_DELETE, CashCardMetrics.REJECTED_EMPTY);
             return ResponseEntity.badRequest().build();
         }
-            cashCardService.bulkDeleteCashCard(ids, principal.getName());
-            log.info("Successfully deleted cashcards {}", ids);
-            log.info("Method deleteCashCardBulk() ends.");
+            log.debug("Successfully deleted {} cashcards", deleted);
+            log.debug("Method deleteCashCardBulk() ends.");
             return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Bulk delete cash cards in the background, for lists too large for one request. The body is
+     * copied to a temporary file as it is read, at most {@code cashcard.jobs.max-items} ids. Nothing
+     * is deleted if a card is not owned when the job starts, then the ids are deleted in chunks,
+     * each committed on its own.
+     * @param body JSON array of ids to be deleted
+     * @param principal
+     * @param ucb Spring injected uri builder
+     * @return 202 with the job and its location
+     */
+    @DeleteMapping(value = "/bulk", params = "async=true")
+    @Operation(summary = "Bulk delete cashcards in a background job")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(mediaType = "application/json",
+            array = @ArraySchema(schema = @Schema(implementation = Long.class))))
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Bulk delete job queued"),
+            @ApiResponse(responseCode = "400", description = "Invalid ids passed, empty list or more ids than cashcard.jobs.max-items"),
+            @ApiResponse(responseCode = "429", description = "Too many bulk jobs running for the user")
+    })
+    public ResponseEntity<BulkJobDTO> deleteCashCardBulkAsync(InputStream body, Principal principal,
+                                                              UriComponentsBuilder ucb){
+        return bulkJobService.submitDelete(bulkReader(body), principal.getName())
+                .map(job -> accepted(job, ucb))
+                .orElseGet(() -> {
+                    cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_DELETE, CashCardMetrics.REJECTED_EMPTY);
+                    return ResponseEntity.badRequest().build();
+                });
+    }
+
 
     /**
      * Return a list of cashcards that amount in the range min to max - ADMIN role only
      * @param filterParamDTO for validate url parameter
+     * @param approximateCount add the X-Approximate-Count header, estimated from the amount histogram
      * @param pageable
      * @return 200 success
      *         400 bad parameter
@@ -248,14 +635,135 @@ public class CashCardController {
 
     })
     public ResponseEntity<List<CashCardResponseDTO>> getFilteredCashCards(@Validated FilterParamDTO filterParamDTO,
+                                                                          @RequestParam(defaultValue = "false") boolean approximateCount,
                                                                           Pageable pageable){
-        log.info("Method getFilterCashCards starts");
+        log.debug("Method getFilterCashCards starts");
         if ( filterParamDTO.getMin() >= filterParamDTO.getMax()) {
             return ResponseEntity.badRequest().build();
         }
         List<CashCardResponseDTO> responseDTOS = cashCardService.findByAmountRange(filterParamDTO.getMin(), filterParamDTO.getMax(), pageable);
-        log.info("Method getFilterCashCards ends");
-        return ResponseEntity.ok(responseDTOS);
+        log.debug("Method getFilterCashCards ends");
+        return filterResponse(filterParamDTO, approximateCount).body(responseDTOS);
+    }
+
+    /**
+     * Scroll through the cashcards that amount in the range min to max with a cursor - ADMIN role only.
+     * The cards are sorted by amount descending then id, pass an empty after for the first window
+     * and the next cursor of the response for the following ones. Unlike page and size no offset
+     * is skipped, so the last window is as fast as the first.
+     * @param filterParamDTO for validate url parameter
+     * @param after cursor returned by the previous window, empty for the first one
+     * @param size maximum number of cashcards in the window
+     * @param approximateCount add the X-Approximate-Count header, estimated from the amount histogram
+     * @return 200 - the cashcards and the cursor of the next window, next is null on the last window
+     *         400 bad parameter or invalid cursor
+     *         403 not admin role try to access
+     */
+    @GetMapping(value = "/filter", params = "after")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Scroll through the CashCards in the range of min and max with a cursor")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "CashCards found"),
+            @ApiResponse(responseCode = "403", description = "Only admin has access to this method",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Bad parameters or invalid cursor",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public ResponseEntity<CashCardScrollResponseDTO> scrollFilteredCashCards(@Validated FilterParamDTO filterParamDTO,
+                                                                             @RequestParam String after,
+                                                                             @RequestParam(defaultValue = "20") int size,
+                                                                             @RequestParam(defaultValue = "false") boolean approximateCount){
+        log.debug("Method scrollFilteredCashCards starts");
+        if ( filterParamDTO.getMin() >= filterParamDTO.getMax()) {
+            return ResponseEntity.badRequest().build();
+        }
+        int windowSize = Math.min(Math.max(size, 1), MAX_WINDOW_SIZE);
+        Window<CashCard> window = cashCardService.scrollByAmountRange(filterParamDTO.getMin(), filterParamDTO.getMax(),
+                CashCardCursor.decode(after), windowSize);
+        log.debug("Method scrollFilteredCashCards ends");
+        return filterResponse(filterParamDTO, approximateCount).body(toScrollResponse(window));
+    }
+
+    /**
+     * Changes of the user's cashcards after a position, for clients that keep a copy in sync instead
+     * of reloading GET /cashcards. Without since, only the current position is returned: read it,
+     * load the cards, then follow the changes from it. With wait, the request is held until a change
+     * is published or the wait elapses (long-poll).
+     * @param since position returned as next by the previous call
+     * @param limit maximum number of changes, at most 1000
+     * @param wait seconds to wait for a change when there is none yet, 0 to answer at once
+     * @param principal
+     * @return 200 - the changes in order and the next position, no change if the wait elapsed
+     *         410 if the changes after since have been purged, reload the cards and start again
+     */
+    @GetMapping("/changes")
+    @Operation(summary = "Get the changes of the user's cashcards after a position, optionally waiting for one")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Changes after the position"),
+            @ApiResponse(responseCode = "410", description = "The changes after the position are no longer available",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public DeferredResult<CashCardChangesDTO> getChanges(@RequestParam(required = false) Long since,
+                                                         @RequestParam(defaultValue = "100") int limit,
+                                                         @RequestParam(defaultValue = "0") long wait,
+                                                         Principal principal){
+        if (since == null) {
+            DeferredResult<CashCardChangesDTO> head = new DeferredResult<>();
+            head.setResult(new CashCardChangesDTO(List.of(), changeFeed.head()));
+            return head;
+        }
+        return changeFeed.poll(principal.getName(), since, Math.min(Math.max(limit, 1), MAX_CHANGES),
+                Duration.ofSeconds(Math.max(wait, 0)));
+    }
+
+    /**
+     * Changes of the user's cashcards as Server-Sent Events: the changes after since, then every
+     * change as it is published. Each event is named change, its id is its position, so a
+     * reconnecting client resumes with the Last-Event-ID header.
+     * @param since position to start after, defaults to Last-Event-ID then to the current position
+     * @param lastEventId set by the browser when it reconnects
+     * @param principal
+     * @return 200 - an event stream
+     *         410 if the changes after since have been purged
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream the changes of the user's cashcards as Server-Sent Events")
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                    Principal principal){
+        long position = since != null ? since : lastEventId != null ? lastEventId : changeFeed.head();
+        return changeFeed.stream(principal.getName(), position, MAX_CHANGES);
+    }
+
+    /**
+     * Aggregates over all the cashcards - ADMIN role only. The cards are scanned in concurrent id
+     * segments, see {@link CashCardAnalytics}, so the response time grows with the table size.
+     * @param buckets number of buckets of the amount histogram, at most 1000
+     * @param top number of owners with the highest balance, at most 1000
+     * @return 200 - count, sum, min, max, percentiles, histogram and top owners
+     *         403 not admin role try to access
+     */
+    @GetMapping("/analytics")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get the amount distribution of all CashCards and the owners with the highest balance")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Aggregates computed"),
+            @ApiResponse(responseCode = "403", description = "Only admin has access to this method",
+                    content = @Content(mediaType = "application/json"))
+    })
+    public ResponseEntity<CashCardAnalyticsDTO> getAnalytics(@RequestParam(defaultValue = "20") int buckets,
+                                                             @RequestParam(defaultValue = "10") int top){
+        return ResponseEntity.ok(cashCardAnalytics.analyze(Math.min(Math.max(buckets, 1), MAX_ANALYTICS_BUCKETS),
+                Math.min(Math.max(top, 1), MAX_TOP_OWNERS)));
+    }
+
+    private ResponseEntity.BodyBuilder filterResponse(FilterParamDTO filterParamDTO, boolean approximateCount) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (approximateCount) {
+            builder.header(APPROXIMATE_COUNT_HEADER,
+                    String.valueOf(amountHistogram.estimate(filterParamDTO.getMin(), filterParamDTO.getMax())));
+        }
+        return builder;
     }
 
-}
\ No newline at end of file
+}
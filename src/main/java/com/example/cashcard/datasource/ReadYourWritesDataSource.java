@@ -0,0 +1,31 @@
+package com.example.cashcard.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Target of the read-only transactions: the replica, or the primary while the current principal
+ * is in its read-your-writes window (see {@link RecentWriters}).
+ */
+public class ReadYourWritesDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    private final RecentWriters recentWriters;
+
+    public ReadYourWritesDataSource(DataSource primary, DataSource replica, RecentWriters recentWriters) {
+        this.recentWriters = recentWriters;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(replica);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return recentWriters.currentPrincipalWroteRecently() ? PRIMARY : REPLICA;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cashcard.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+
+/**
+ * Principals that committed a read-write transaction within the last
+ * {@code cashcard.datasource.read-your-writes.window}. The replica may not have their changes yet,
+ * so {@link ReadYourWritesDataSource} keeps serving their reads from the primary until the window
+ * has passed. Only the principal of the request that wrote becomes sticky, other users keep
+ * reading from the replica.
+ */
+public class RecentWriters implements TransactionExecutionListener {
+
+    private final Cache<String, Boolean> writers;
+
+    public RecentWriters(Duration window, long maximumSize) {
+        this.writers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        String principal = currentPrincipal();
+        // scheduled and background work has no principal, nobody reads its writes back right away
+        if (commitFailure == null && !transaction.isReadOnly() && principal != null) {
+            writers.put(principal, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Whether the current principal wrote within the window.
+     */
+    public boolean currentPrincipalWroteRecently() {
+        String principal = currentPrincipal();
+        return principal != null && writers.getIfPresent(principal) != null;
+    }
+
+    private static String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cashcard.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs the {@code spring.sql.init} scripts only on a database without the cash_card table, in
+ * place of the initializer of Spring Boot which runs them on every start. A durable database keeps
+ * its tables and its cards across restarts: schema.sql would fail on the existing tables and
+ * data.sql would insert the seed cards again, so a start on an existing database runs neither.
+ */
+public class SchemaIfMissingInitializer extends SqlDataSourceScriptDatabaseInitializer {
+
+    private static final String SCHEMA_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+            + "WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = 'CASH_CARD'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private static final Logger log = LoggerFactory.getLogger(SchemaIfMissingInitializer.class);
+
+    public SchemaIfMissingInitializer(DataSource dataSource, DatabaseInitializationSettings settings) {
+        super(dataSource, settings);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * The settings of {@code spring.sql.init.*}. They are bound here since the auto-configuration
+     * does not register them with {@code spring.sql.init.mode=never}.
+     */
+    public static DatabaseInitializationSettings settings(Environment environment) {
+        return getSettings(Binder.get(environment)
+                .bind("spring.sql.init", SqlInitializationProperties.class)
+                .orElseGet(SqlInitializationProperties::new));
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        if (jdbcTemplate.queryForObject(SCHEMA_SQL, Integer.class) > 0) {
+            log.info("Schema found, schema and data scripts skipped");
+            return false;
+        }
+        return super.initializeDatabase();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.cashcard.dto;
+
+public class AuthTokenResponseDTO {
+
+    private String token;
+    private long expiresIn;
+
+    public AuthTokenResponseDTO() {}
+
+    public AuthTokenResponseDTO(String token, long expiresIn) {
+        this.token = token;
+        this.expiresIn = expiresIn;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
+}
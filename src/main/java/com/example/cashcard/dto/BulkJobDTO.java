@@ -0,0 +1,72 @@
+package com.example.cashcard.dto;
+
+import java.util.UUID;
+
+public class BulkJobDTO {
+
+    private UUID id;
+    private String type;
+    private String status;
+    private long total;
+    private long processed;
+    private String error;
+
+    public BulkJobDTO() {}
+
+    public BulkJobDTO(UUID id, String type, String status, long total, long processed, String error) {
+        this.id = id;
+        this.type = type;
+        this.status = status;
+        this.total = total;
+        this.processed = processed;
+        this.error = error;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.error.InvalidBulkRequestException;
+import com.example.cashcard.money.Amounts;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Reads the JSON array of a bulk request body element by element into caller owned primitive
+ * buffers, so the body is never bound to a list. Elements are validated like
+ * {@link CashCardBulkUpdateDTO}: an update needs a positive id and a positive amount, unknown
+ * fields are skipped. Ids of a delete are only checked to be integers, like a bound List&lt;Long&gt;.
+ * An invalid element or malformed JSON throws {@link InvalidBulkRequestException}.
+ */
+public class BulkRequestReader {
+
+    private final JsonParser parser;
+    private boolean started;
+    private boolean finished;
+    private long index = -1;
+
+    public BulkRequestReader(JsonParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Read the next ids of a bulk delete body.
+     * @param ids buffer to fill from index 0
+     * @return number of ids read, 0 once the array is exhausted
+     */
+    public int readIds(long[] ids) {
+        try {
+            int count = 0;
+            while (count < ids.length && nextElement()) {
+                if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+                    throw invalid("ID must be an integer");
+                }
+                ids[count++] = parser.getLongValue();
+            }
+            return count;
+        } catch (JsonProcessingException e) {
+            throw malformed(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read the next updates of a bulk update body.
+     * @param ids buffer for the ids, filled from index 0
+     * @param amounts buffer for the amounts in minor units, same length as ids
+     * @return number of updates read, 0 once the array is exhausted
+     */
+    public int readUpdates(long[] ids, long[] amounts) {
+        try {
+            int count = 0;
+            while (count < ids.length && nextElement()) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    throw invalid("An object with an id and an amount is expected");
+                }
+                long id = 0;
+                long amount = 0;
+                boolean hasId = false;
+                boolean hasAmount = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("id".equals(field) && value != JsonToken.VALUE_NULL) {
+                        if (value != JsonToken.VALUE_NUMBER_INT) {
+                            throw invalid("ID must be an integer");
+                        }
+                        id = parser.getLongValue();
+                        hasId = true;
+                    } else if ("amount".equals(field) && value != JsonToken.VALUE_NULL) {
+                        amount = amount(value);
+                        hasAmount = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (!hasId) {
+                    throw invalid("ID cannot be null");
+                }
+                if (id <= 0) {
+                    throw invalid("ID must be positive");
+                }
+                if (!hasAmount) {
+                    throw invalid("Amount cannot be null");
+                }
+                if (amount <= 0) {
+                    throw invalid("Amount must be positive");
+                }
+                ids[count] = id;
+                amounts[count] = amount;
+                count++;
+            }
+            return count;
+        } catch (JsonProcessingException e) {
+            throw malformed(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long amount(JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT && value != JsonToken.VALUE_STRING) {
+            throw invalid("Amount must be a number");
+        }
+        try {
+            return Amounts.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw invalid("Amount must be a number with at most " + Amounts.SCALE + " decimals");
+        }
+    }
+
+    /**
+     * Move to the next element of the array.
+     * @return false at the end of the array
+     */
+    private boolean nextElement() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidBulkRequestException("A JSON array is expected");
+            }
+            started = true;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            finished = true;
+            if (parser.nextToken() != null) {
+                throw new InvalidBulkRequestException("Unexpected content after the JSON array");
+            }
+            return false;
+        }
+        if (token == null) {
+            throw new InvalidBulkRequestException("Unexpected end of the JSON array");
+        }
+        index++;
+        return true;
+    }
+
+    private InvalidBulkRequestException invalid(String message) {
+        return new InvalidBulkRequestException(message + " (element " + index + ")");
+    }
+
+    private InvalidBulkRequestException malformed(JsonProcessingException e) {
+        return new InvalidBulkRequestException("Malformed JSON: " + e.getOriginalMessage());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.money.Amount;
+
+import java.util.List;
+
+public class CashCardAnalyticsDTO {
+
+    private long count;
+    @Amount
+    private long sum;
+    @Amount
+    private Long min;
+    @Amount
+    private Long max;
+    private List<Percentile> percentiles;
+    private List<Bucket> histogram;
+    private List<OwnerBalance> topOwners;
+
+    public CashCardAnalyticsDTO() {}
+
+    public CashCardAnalyticsDTO(long count, long sum, Long min, Long max, List<Percentile> percentiles,
+                                List<Bucket> histogram, List<OwnerBalance> topOwners) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.percentiles = percentiles;
+        this.histogram = histogram;
+        this.topOwners = topOwners;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public Long getMin() {
+        return min;
+    }
+
+    public Long getMax() {
+        return max;
+    }
+
+    public List<Percentile> getPercentiles() {
+        return percentiles;
+    }
+
+    public List<Bucket> getHistogram() {
+        return histogram;
+    }
+
+    public List<OwnerBalance> getTopOwners() {
+        return topOwners;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public void setMin(Long min) {
+        this.min = min;
+    }
+
+    public void setMax(Long max) {
+        this.max = max;
+    }
+
+    public void setPercentiles(List<Percentile> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    public void setHistogram(List<Bucket> histogram) {
+        this.histogram = histogram;
+    }
+
+    public void setTopOwners(List<OwnerBalance> topOwners) {
+        this.topOwners = topOwners;
+    }
+
+    /**
+     * Amount below or at which percentile percent of the cards fall.
+     */
+    public record Percentile(int percentile, @Amount long amount) {}
+
+    /**
+     * Number of cards with an amount between from and to, inclusive.
+     */
+    public record Bucket(@Amount long from, @Amount long to, long count) {}
+
+    public record OwnerBalance(String owner, long count, @Amount long balance) {}
+}
@@ -1,5 +1,6 @@
 package com.example.cashcard.dto;
 
+import com.example.cashcard.money.Amount;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
@@ -10,20 +11,21 @@ public class CashCardBulkUpdateDTO {
 
     @NotNull(message = "Amount cannot be null")
     @Positive(message = "Amount must be positive")
-    private Double amount;
+    @Amount
+    private Long amount;
 
     public CashCardBulkUpdateDTO(){}
 
-    public CashCardBulkUpdateDTO(Long id, Double amount){
+    public CashCardBulkUpdateDTO(Long id, Long amount){
         this.id = id;
         this.amount = amount;
     }
 
-    public Double getAmount() {
+    public Long getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Long amount) {
         this.amount = amount;
     }
 
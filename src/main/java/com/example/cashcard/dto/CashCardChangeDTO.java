@@ -0,0 +1,71 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.money.Amount;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One change of a cash card in the change stream. Amount and version are those written by the
+ * change, both are absent for a deletion.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CashCardChangeDTO {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private long seq;
+    private Type type;
+    private Long id;
+    @Amount
+    private Long amount;
+    private Long version;
+
+    public CashCardChangeDTO() {}
+
+    public CashCardChangeDTO(long seq, Type type, Long id, Long amount, Long version) {
+        this.seq = seq;
+        this.type = type;
+        this.id = id;
+        this.amount = amount;
+        this.version = version;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
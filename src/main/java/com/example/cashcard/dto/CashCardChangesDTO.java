@@ -0,0 +1,35 @@
+package com.example.cashcard.dto;
+
+import java.util.List;
+
+/**
+ * A page of the change stream. next is the position to pass as since to read the following changes.
+ */
+public class CashCardChangesDTO {
+
+    private List<CashCardChangeDTO> changes;
+    private long next;
+
+    public CashCardChangesDTO() {}
+
+    public CashCardChangesDTO(List<CashCardChangeDTO> changes, long next) {
+        this.changes = changes;
+        this.next = next;
+    }
+
+    public List<CashCardChangeDTO> getChanges() {
+        return changes;
+    }
+
+    public long getNext() {
+        return next;
+    }
+
+    public void setChanges(List<CashCardChangeDTO> changes) {
+        this.changes = changes;
+    }
+
+    public void setNext(long next) {
+        this.next = next;
+    }
+}
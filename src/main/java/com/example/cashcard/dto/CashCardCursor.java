@@ -0,0 +1,59 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.error.InvalidCursorException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor. It encodes the (amount, id) of the last cashcard a client has seen so the
+ * next page can seek straight to it instead of skipping rows with an offset.
+ */
+public class CashCardCursor {
+
+    private static final int LENGTH = Long.BYTES + Long.BYTES;
+
+    private final long amount;
+    private final Long id;
+
+    public CashCardCursor(long amount, Long id) {
+        this.amount = amount;
+        this.id = id;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH).putLong(amount).putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}.
+     * @param token cursor sent back by the client
+     * @return the cursor, or null if the token is blank (first page)
+     * @throws InvalidCursorException if the token was not produced by this API
+     */
+    public static CashCardCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
+        if (bytes.length != LENGTH) {
+            throw new InvalidCursorException();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new CashCardCursor(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -1,24 +1,26 @@
 package com.example.cashcard.dto;
 
+import com.example.cashcard.money.Amount;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
 public class CashCardRequestDTO {
     @NotNull(message = "Amount cannot be null.")
     @Positive(message = "Amount must be greater than 0.")
-    private Double amount;
+    @Amount
+    private Long amount;
 
     public CashCardRequestDTO(){}
 
-    public CashCardRequestDTO (Double amount){
+    public CashCardRequestDTO (Long amount){
         this.amount = amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Long amount) {
         this.amount = amount;
     }
 
-    public Double getAmount() {
+    public Long getAmount() {
         return amount;
     }
 }
@@ -1,13 +1,16 @@
 package com.example.cashcard.dto;
 
+import com.example.cashcard.money.Amount;
+
 public class CashCardResponseDTO {
 
     private Long id;
-    private Double amount;
+    @Amount
+    private long amount;
 
     public CashCardResponseDTO() {}
 
-    public CashCardResponseDTO(Long id, Double amount) {
+    public CashCardResponseDTO(Long id, long amount) {
         this.id = id;
         this.amount = amount;
     }
@@ -16,7 +19,7 @@ public class CashCardResponseDTO {
         return id;
     }
 
-    public Double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
@@ -24,7 +27,7 @@ public class CashCardResponseDTO {
         this.id = id;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 }
@@ -0,0 +1,32 @@
+package com.example.cashcard.dto;
+
+import java.util.List;
+
+public class CashCardScrollResponseDTO {
+
+    private List<CashCardResponseDTO> content;
+    private String next;
+
+    public CashCardScrollResponseDTO() {}
+
+    public CashCardScrollResponseDTO(List<CashCardResponseDTO> content, String next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public List<CashCardResponseDTO> getContent() {
+        return content;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setContent(List<CashCardResponseDTO> content) {
+        this.content = content;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.money.Amount;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public class CashCardTransferDTO {
+    @NotNull(message = "Source cashcard cannot be null")
+    @Positive(message = "Source cashcard must be positive")
+    private Long fromId;
+
+    @NotNull(message = "Target cashcard cannot be null")
+    @Positive(message = "Target cashcard must be positive")
+    private Long toId;
+
+    @NotNull(message = "Amount cannot be null")
+    @Positive(message = "Amount must be positive")
+    @Amount
+    private Long amount;
+
+    public CashCardTransferDTO(){}
+
+    public CashCardTransferDTO(Long fromId, Long toId, Long amount){
+        this.fromId = fromId;
+        this.toId = toId;
+        this.amount = amount;
+    }
+
+    public Long getFromId() {
+        return fromId;
+    }
+
+    public void setFromId(Long fromId) {
+        this.fromId = fromId;
+    }
+
+    public Long getToId() {
+        return toId;
+    }
+
+    public void setToId(Long toId) {
+        this.toId = toId;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+}
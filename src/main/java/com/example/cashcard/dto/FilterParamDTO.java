@@ -1,30 +1,33 @@
 package com.example.cashcard.dto;
 
+import com.example.cashcard.money.Amount;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 public class FilterParamDTO {
     @NotNull
     @Min(0)
-    private Double min;
+    @Amount
+    private Long min;
 
     @NotNull
     @Min(0)
-    private Double max;
+    @Amount
+    private Long max;
 
-    public Double getMax() {
+    public Long getMax() {
         return max;
     }
 
-    public Double getMin() {
+    public Long getMin() {
         return min;
     }
 
-    public void setMax(Double max) {
+    public void setMax(Long max) {
         this.max = max;
     }
 
-    public void setMin(Double min) {
+    public void setMin(Long min) {
         this.min = min;
     }
 }
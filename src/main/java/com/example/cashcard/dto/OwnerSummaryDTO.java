@@ -0,0 +1,55 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.money.Amount;
+
+public class OwnerSummaryDTO {
+
+    private long count;
+    @Amount
+    private long sum;
+    @Amount
+    private Long min;
+    @Amount
+    private Long max;
+
+    public OwnerSummaryDTO() {}
+
+    public OwnerSummaryDTO(long count, long sum, Long min, Long max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public Long getMin() {
+        return min;
+    }
+
+    public Long getMax() {
+        return max;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public void setMin(Long min) {
+        this.min = min;
+    }
+
+    public void setMax(Long max) {
+        this.max = max;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class CashCardVersionMismatchException extends RuntimeException {
+    public CashCardVersionMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class ChangesExpiredException extends RuntimeException {
+    public ChangesExpiredException(String message) {
+        super(message);
+    }
+}
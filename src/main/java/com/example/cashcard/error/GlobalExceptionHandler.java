@@ -1,10 +1,14 @@
 package com.example.cashcard.error;
+import org.springframework.context.MessageSourceResolvable;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.method.ParameterValidationResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.HashMap;
@@ -25,6 +29,23 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
 
+    // Same for the elements of a list body, validated by method validation
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public ResponseEntity<Map<String, String>> handleMethodValidationExceptions(HandlerMethodValidationException ex) {
+        Map<String, String> errors = new HashMap<>();
+
+        for (ParameterValidationResult result : ex.getAllValidationResults()) {
+            String parameter = result.getContainerIndex() == null ? result.getMethodParameter().getParameterName()
+                    : "[" + result.getContainerIndex() + "]";
+            for (MessageSourceResolvable error : result.getResolvableErrors()) {
+                errors.put(error instanceof FieldError fieldError ? parameter + "." + fieldError.getField() : parameter,
+                        error.getDefaultMessage());
+            }
+        }
+
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
     //Handle wrong data type when pass amount in the body
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ResponseEntity<Map<String, String>> handleJsonParseErrors(HttpMessageNotReadableException ex) {
@@ -39,6 +60,76 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage()));
     }
 
+    //Handle a cursor that was not issued by the keyset pagination
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidCursor(InvalidCursorException ex) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle a sort property or a page number the filter cannot serve
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidPageRequest(InvalidPageRequestException ex) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle an If-Match that does not match the current version of the cashcard
+    @ExceptionHandler(CashCardVersionMismatchException.class)
+    public ResponseEntity<Map<String, String>> handleVersionMismatch(CashCardVersionMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle an invalid element or malformed JSON in a streamed bulk body
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidBulkRequest(InvalidBulkRequestException ex) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle a blank or too long Idempotency-Key header
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidIdempotencyKey(InvalidIdempotencyKeyException ex) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle an Idempotency-Key sent again with a different body
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle a bulk job submitted while the owner has too many running
+    @ExceptionHandler(TooManyJobsException.class)
+    public ResponseEntity<Map<String, String>> handleTooManyJobs(TooManyJobsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle a change stream position whose events have been purged
+    @ExceptionHandler(ChangesExpiredException.class)
+    public ResponseEntity<Map<String, String>> handleChangesExpired(ChangesExpiredException ex) {
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle a transfer that would leave an amount out of its range
+    @ExceptionHandler(TransferRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleTransferRejected(TransferRejectedException ex) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    //Handle rows that stayed locked after the retries, or were updated since they were read
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, String>> handleConcurrencyFailure(ConcurrencyFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "The cashcards are being changed concurrently, please retry."));
+    }
+
     //Handle unexpected error
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleGenericException(Exception ex) {
@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class InvalidBulkRequestException extends RuntimeException {
+    public InvalidBulkRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException() {
+        super("Invalid cursor.");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
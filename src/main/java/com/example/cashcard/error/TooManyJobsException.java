@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class TooManyJobsException extends RuntimeException {
+    public TooManyJobsException(String message) {
+        super(message);
+    }
+}
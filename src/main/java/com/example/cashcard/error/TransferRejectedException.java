@@ -0,0 +1,7 @@
+package com.example.cashcard.error;
+
+public class TransferRejectedException extends RuntimeException {
+    public TransferRejectedException(String message) {
+        super(message);
+    }
+}
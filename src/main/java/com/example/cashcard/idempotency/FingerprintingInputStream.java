@@ -0,0 +1,48 @@
+package com.example.cashcard.idempotency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Request body that computes its SHA-256 fingerprint while it is consumed, for bodies that are
+ * streamed instead of bound to an object.
+ */
+public class FingerprintingInputStream extends DigestInputStream {
+
+    private String fingerprint;
+
+    public FingerprintingInputStream(InputStream body) {
+        super(body, sha256());
+    }
+
+    /**
+     * Read what is left of the body and return the fingerprint of all of it.
+     */
+    public String fingerprint() {
+        if (fingerprint == null) {
+            try {
+                byte[] buffer = new byte[8192];
+                while (read(buffer) != -1) {
+                    // digested by read
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            fingerprint = Base64.getEncoder().encodeToString(getMessageDigest().digest());
+        }
+        return fingerprint;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
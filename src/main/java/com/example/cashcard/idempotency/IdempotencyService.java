@@ -0,0 +1,196 @@
+package com.example.cashcard.idempotency;
+
+import com.example.cashcard.error.IdempotencyKeyReusedException;
+import com.example.cashcard.error.InvalidIdempotencyKeyException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request made with an Idempotency-Key at most once per owner, operation and key. The
+ * response of a successful request is kept in the {@link IdempotencyStore} and replayed to the
+ * retries without touching the cashcards. A duplicate that arrives while the first request is still
+ * running waits for it instead of running in parallel. Failed requests are not remembered, a
+ * retry runs them again.
+ * <p>
+ * The request and the save of its response run in {@link IdempotencyStore#inTransaction}: with the
+ * JDBC store both commit together, so a request is never applied without its response. The
+ * in-memory store saves after the request has committed and only promises at most once while the
+ * instance is up.
+ */
+@Component
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final Duration waitTimeout;
+    // requests running on this instance, duplicates wait on their future
+    private final ConcurrentHashMap<String, CompletableFuture<IdempotentResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter replayed;
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    @Autowired
+    public IdempotencyService(IdempotencyStore store, ObjectMapper objectMapper,
+                              @Value("${cashcard.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                              MeterRegistry meterRegistry) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+        this.executed = requests(meterRegistry, "executed");
+        this.replayed = requests(meterRegistry, "replayed");
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("cashcard.idempotency.requests")
+                .description("Requests with an Idempotency-Key, executed or answered from an earlier response")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the request once for the key, or replay the response of the first run.
+     * @param owner principal, keys of different owners never collide
+     * @param operation method and path of the endpoint
+     * @param idempotencyKey Idempotency-Key header, null to run the request without protection
+     * @param body request body, a retry with another body under the same key is rejected
+     * @param request runs the request, called on the current thread
+     * @return the response of the request, or a replay of it flagged with the Idempotent-Replayed header
+     * @throws InvalidIdempotencyKeyException if the key is blank or too long
+     * @throws IdempotencyKeyReusedException if the key was used for a different body
+     * @throws ConcurrencyFailureException if the first run of the key did not finish in time
+     */
+    public ResponseEntity<Void> execute(String owner, String operation, String idempotencyKey, Object body,
+                                        Supplier<ResponseEntity<Void>> request) {
+        return execute(owner, operation, idempotencyKey, () -> fingerprint(body), request);
+    }
+
+    /**
+     * Same as {@link #execute(String, String, String, Object, Supplier)} for a streamed body, see
+     * {@link FingerprintingInputStream}.
+     * @param fingerprint fingerprint of the whole body, only asked once the request has run or
+     *                    when a response is replayed
+     */
+    public ResponseEntity<Void> execute(String owner, String operation, String idempotencyKey, Supplier<String> fingerprint,
+                                        Supplier<ResponseEntity<Void>> request) {
+        if (idempotencyKey == null) {
+            return request.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = owner + '\n' + operation + '\n' + idempotencyKey;
+        while (true) {
+            Optional<IdempotentResponse> completed = store.find(key);
+            if (completed.isPresent()) {
+                return replay(completed.get(), fingerprint);
+            }
+            CompletableFuture<IdempotentResponse> running = new CompletableFuture<>();
+            CompletableFuture<IdempotentResponse> first = inFlight.putIfAbsent(key, running);
+            if (first == null) {
+                return runFirst(key, fingerprint, running, request);
+            }
+            IdempotentResponse response = await(first);
+            if (response != null) {
+                return replay(response, fingerprint);
+            }
+            // the first run failed and left nothing behind, run it again
+        }
+    }
+
+    private ResponseEntity<Void> runFirst(String key, Supplier<String> fingerprint, CompletableFuture<IdempotentResponse> running,
+                                          Supplier<ResponseEntity<Void>> request) {
+        try {
+            // another request may have completed between our lookup and our registration
+            Optional<IdempotentResponse> completed = store.find(key);
+            if (completed.isPresent()) {
+                running.complete(completed.get());
+                return replay(completed.get(), fingerprint);
+            }
+            Outcome outcome = store.inTransaction(() -> {
+                ResponseEntity<Void> response = request.get();
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    return new Outcome(response, null);
+                }
+                URI location = response.getHeaders().getLocation();
+                IdempotentResponse stored = new IdempotentResponse(fingerprint.get(), response.getStatusCode().value(),
+                        location == null ? null : location.toString());
+                store.save(key, stored);
+                return new Outcome(response, stored);
+            });
+            executed.increment();
+            running.complete(outcome.stored());
+            return outcome.response();
+        } catch (RuntimeException | Error e) {
+            running.complete(null);
+            throw e;
+        } finally {
+            inFlight.remove(key, running);
+        }
+    }
+
+    // response of a run, and what was saved for it, null if it did not succeed
+    private record Outcome(ResponseEntity<Void> response, IdempotentResponse stored) {
+    }
+
+    private IdempotentResponse await(CompletableFuture<IdempotentResponse> first) {
+        try {
+            return first.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConcurrencyFailureException("A request with the same Idempotency-Key is still running");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Interrupted while waiting for the same Idempotency-Key", e);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private ResponseEntity<Void> replay(IdempotentResponse response, Supplier<String> fingerprint) {
+        if (!response.fingerprint().equals(fingerprint.get())) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request");
+        }
+        replayed.increment();
+        log.debug("Replaying the response of an idempotent request");
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status()).header(REPLAYED_HEADER, "true");
+        if (response.location() != null) {
+            builder.header(HttpHeaders.LOCATION, response.location());
+        }
+        return builder.build();
+    }
+
+    private String fingerprint(Object body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(body));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot fingerprint the request body", e);
+        }
+    }
+}
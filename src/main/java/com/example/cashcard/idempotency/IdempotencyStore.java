@@ -0,0 +1,34 @@
+package com.example.cashcard.idempotency;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the responses of completed idempotent requests for {@code cashcard.idempotency.ttl}.
+ * {@code cashcard.idempotency.store} selects the bounded in-memory store (default) or the
+ * idempotency_key table, which survives restarts and is shared by every instance.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * @param key owner, operation and client key
+     * @return the response of the completed request, empty if unknown or expired
+     */
+    Optional<IdempotentResponse> find(String key);
+
+    /**
+     * Remember the response of a completed request, replacing an expired one.
+     */
+    void save(String key, IdempotentResponse response);
+
+    /**
+     * Run a request so that a {@link #save} made by it commits or rolls back with the request's own
+     * changes. The in-memory store has no transaction to join and just runs the request: a failed
+     * save, or a restart before it, lets a retry run the request again.
+     * @param request runs the request and saves its response, on the current thread
+     * @return the result of the request
+     */
+    default <T> T inTransaction(Supplier<T> request) {
+        return request.get();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.cashcard.idempotency;
+
+/**
+ * Outcome of a request made with an Idempotency-Key, replayed to the retries of the same request.
+ * The idempotent endpoints answer without a body, so the status and the Location header are enough.
+ * @param fingerprint digest of the request body, a retry must send the same body
+ * @param status http status of the first response
+ * @param location Location header of the first response, null if none
+ */
+public record IdempotentResponse(String fingerprint, int status, String location) {
+}
@@ -0,0 +1,45 @@
+package com.example.cashcard.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Idempotency store held in the JVM, it holds at most {@code cashcard.idempotency.maximum-size}
+ * responses and forgets them on restart. Hit/miss metrics are published under the "idempotency"
+ * cache name.
+ */
+@Component
+@ConditionalOnProperty(name = "cashcard.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotentResponse> cache;
+
+    public InMemoryIdempotencyStore(@Value("${cashcard.idempotency.maximum-size:10000}") long maximumSize,
+                                    @Value("${cashcard.idempotency.ttl:24h}") Duration ttl,
+                                    MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotency");
+    }
+
+    @Override
+    public Optional<IdempotentResponse> find(String key) {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    @Override
+    public void save(String key, IdempotentResponse response) {
+        cache.put(key, response);
+    }
+}
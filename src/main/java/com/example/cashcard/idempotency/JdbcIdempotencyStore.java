@@ -0,0 +1,87 @@
+package com.example.cashcard.idempotency;
+
+import com.example.cashcard.sharding.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency store in the idempotency_key table, responses survive a restart and are seen by every
+ * instance sharing the database. Expired rows are ignored on read and deleted in the background.
+ * Keys start with their owner and are kept on the owner's shard. The response row is written in
+ * the transaction of the request, so a committed request always leaves its response behind.
+ */
+@Component
+@ConditionalOnProperty(name = "cashcard.idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String FIND_SQL = "SELECT fingerprint, status, location FROM idempotency_key "
+            + "WHERE idempotency_key = ? AND created_at > ?";
+    private static final String SAVE_SQL = "MERGE INTO idempotency_key (idempotency_key, fingerprint, status, location, created_at) "
+            + "KEY (idempotency_key) VALUES (?, ?, ?, ?, ?)";
+    private static final String PURGE_SQL = "DELETE FROM idempotency_key WHERE created_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotencyStore.class);
+
+    @Autowired
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, Shards shards, PlatformTransactionManager transactionManager,
+                                @Value("${cashcard.idempotency.ttl:24h}") Duration ttl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Optional<IdempotentResponse> find(String key) {
+        return jdbcTemplate.query(FIND_SQL,
+                (rs, rowNum) -> new IdempotentResponse(rs.getString(1), rs.getInt(2), rs.getString(3)),
+                key, expiredBefore()).stream().findFirst();
+    }
+
+    @Override
+    public void save(String key, IdempotentResponse response) {
+        jdbcTemplate.update(SAVE_SQL, key, response.fingerprint(), response.status(), response.location(),
+                Timestamp.from(Instant.now()));
+    }
+
+    /**
+     * Run the request in a transaction its service calls and the {@link #save} join.
+     */
+    @Override
+    public <T> T inTransaction(Supplier<T> request) {
+        return transactionTemplate.execute(status -> request.get());
+    }
+
+    /**
+     * Delete the expired responses.
+     */
+    @Scheduled(fixedDelayString = "${cashcard.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        shards.forEachShard(shard -> {
+            int purged = jdbcTemplate.update(PURGE_SQL, expiredBefore());
+            log.debug("Purged {} expired idempotency keys of shard {}", purged, shard);
+        });
+    }
+
+    private Timestamp expiredBefore() {
+        return Timestamp.from(Instant.now().minus(ttl));
+    }
+}
@@ -3,7 +3,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.validation.constraints.NotNull;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
+import com.example.cashcard.money.Amount;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.Positive;
 
 import java.util.Objects;
@@ -12,19 +15,28 @@ import java.util.Objects;
 @Entity
 public class CashCard{
 
+    // pooled sequence: one round trip hands out allocationSize ids, which must match the INCREMENT BY
+    // of cash_card_seq, and unlike IDENTITY it lets Hibernate batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cash_card_seq")
+    @SequenceGenerator(name = "cash_card_seq", sequenceName = "cash_card_seq", allocationSize = 50)
     private Long id;
 
-    @NotNull
+    // minor units, 12345 is 123.45
     @Positive
-    private Double amount;
+    @Amount
+    private long amount;
 
     private String owner;
 
+    // bumped by every update, exposed as the ETag of GET /cashcards/{id}
+    @Version
+    @JsonIgnore
+    private long version;
+
     public CashCard(){}
 
-    public CashCard(Long id, Double amount,String owner){
+    public CashCard(Long id, long amount,String owner){
         this.id = id;
         this.amount = amount;
         this.owner=owner;
@@ -34,7 +46,7 @@ public class CashCard{
         return id;
     }
 
-    public Double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
@@ -42,7 +54,7 @@ public class CashCard{
         this.id = id;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
@@ -54,6 +66,14 @@ public class CashCard{
         this.owner = owner;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     //If we use the recrod class we don't need to override these two methods.
     // For assert unit test when comparing two cashcards
     @Override
@@ -62,7 +82,7 @@ public class CashCard{
         if (!(obj instanceof CashCard)) return false;
         CashCard cashCard = (CashCard) obj;
         return Objects.equals(id, cashCard.id)
-                && Objects.equals(amount, cashCard.amount);
+                && amount == cashCard.amount;
     }
     @Override
     public int hashCode() {
@@ -0,0 +1,47 @@
+package com.example.cashcard.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Running totals of an owner's cashcards, amounts in minor units. The row is only written with deltas by
+ * {@link com.example.cashcard.repository.OwnerSummaryRepository#applyDelta}, this entity is read only.
+ */
+@Entity
+@Table(name = "owner_summary")
+public class OwnerSummary {
+
+    @Id
+    private String owner;
+
+    private long cardCount;
+
+    private long totalAmount;
+
+    private Long minAmount;
+
+    private Long maxAmount;
+
+    public OwnerSummary() {}
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getCardCount() {
+        return cardCount;
+    }
+
+    public long getTotalAmount() {
+        return totalAmount;
+    }
+
+    public Long getMinAmount() {
+        return minAmount;
+    }
+
+    public Long getMaxAmount() {
+        return maxAmount;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.cashcard.money;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code long}/{@code Long} holding an amount in minor units. In JSON bodies and in request
+ * parameters bound to a DTO the amount is read and written as a decimal, see {@link Amounts}.
+ */
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@JacksonAnnotationsInside
+@JsonSerialize(using = AmountSerializer.class)
+@JsonDeserialize(using = AmountDeserializer.class)
+public @interface Amount {
+}
@@ -0,0 +1,47 @@
+package com.example.cashcard.money;
+
+import org.springframework.format.AnnotationFormatterFactory;
+import org.springframework.format.Formatter;
+import org.springframework.format.Parser;
+import org.springframework.format.Printer;
+
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Binds {@link Amount} fields of request parameter DTOs such as {@code ?min=1.50} to minor units.
+ */
+public class AmountFormatterFactory implements AnnotationFormatterFactory<Amount> {
+
+    private static final Formatter<Long> FORMATTER = new Formatter<>() {
+        @Override
+        public Long parse(String text, Locale locale) throws ParseException {
+            try {
+                return Amounts.parse(text.trim());
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new ParseException(text, 0);
+            }
+        }
+
+        @Override
+        public String print(Long minor, Locale locale) {
+            return Amounts.toString(minor);
+        }
+    };
+
+    @Override
+    public Set<Class<?>> getFieldTypes() {
+        return Set.of(Long.class, long.class);
+    }
+
+    @Override
+    public Printer<?> getPrinter(Amount annotation, Class<?> fieldType) {
+        return FORMATTER;
+    }
+
+    @Override
+    public Parser<?> getParser(Amount annotation, Class<?> fieldType) {
+        return FORMATTER;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.cashcard.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes minor units as a JSON decimal number, 12345 as 123.45: the integer part goes through
+ * {@link JsonGenerator#writeNumber(long)} and the two fraction digits are appended raw, so nothing
+ * is allocated for a positive amount.
+ */
+public class AmountSerializer extends StdSerializer<Long> {
+
+    public AmountSerializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public void serialize(Long value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        long minor = value;
+        if (minor < 0) {
+            generator.writeNumber(Amounts.toString(minor));
+            return;
+        }
+        int cents = (int) (minor % Amounts.MINOR_UNITS_PER_UNIT);
+        generator.writeNumber(minor / Amounts.MINOR_UNITS_PER_UNIT);
+        generator.writeRaw('.');
+        generator.writeRaw((char) ('0' + cents / 10));
+        generator.writeRaw((char) ('0' + cents % 10));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.cashcard.money;
+
+import java.math.BigDecimal;
+
+/**
+ * Money amounts are stored as a {@code long} number of minor units (cents), the API exchanges them as
+ * decimals with {@link #SCALE} fraction digits: 12345 is 123.45. Parsing and formatting work on the
+ * digits directly, no {@link BigDecimal} or double is built for plain decimals.
+ */
+public final class Amounts {
+
+    public static final int SCALE = 2;
+    public static final long MINOR_UNITS_PER_UNIT = 100;
+
+    private Amounts() {}
+
+    public static long parse(CharSequence text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        return parse(chars, 0, chars.length);
+    }
+
+    /**
+     * Parse a decimal such as 123, 123.4 or -123.45 into minor units.
+     * @throws NumberFormatException if the text is not a number or has more than {@link #SCALE}
+     *         significant fraction digits
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long parse(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+            units = Math.addExact(Math.multiplyExact(units, 10), chars[i++] - '0');
+            digits++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < end && chars[i] == '.') {
+            i++;
+            while (i < end && chars[i] >= '0' && chars[i] <= '9' && fractionDigits < SCALE) {
+                fraction = fraction * 10 + (chars[i++] - '0');
+                fractionDigits++;
+                digits++;
+            }
+        }
+        if (i < end || digits == 0) {
+            // exponents, trailing zeros past the scale: rare, leave them to BigDecimal
+            return parseSlow(new String(chars, offset, length));
+        }
+        for (; fractionDigits < SCALE; fractionDigits++) {
+            fraction *= 10;
+        }
+        long minor = Math.addExact(Math.multiplyExact(units, MINOR_UNITS_PER_UNIT), fraction);
+        return negative ? -minor : minor;
+    }
+
+    private static long parseSlow(String text) {
+        try {
+            return new BigDecimal(text).movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount must have at most " + SCALE + " decimals: " + text);
+        }
+    }
+
+    /**
+     * Append the decimal form of the amount, always with {@link #SCALE} fraction digits.
+     */
+    public static StringBuilder append(StringBuilder builder, long minor) {
+        if (minor < 0) {
+            builder.append('-');
+        }
+        long units = Math.abs(minor / MINOR_UNITS_PER_UNIT);
+        int cents = (int) Math.abs(minor % MINOR_UNITS_PER_UNIT);
+        return builder.append(units).append('.').append((char) ('0' + cents / 10)).append((char) ('0' + cents % 10));
+    }
+
+    public static String toString(long minor) {
+        return append(new StringBuilder(24), minor).toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.cashcard.outbox;
+
+import com.example.cashcard.dto.CashCardChangeDTO;
+import com.example.cashcard.model.CashCard;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records every change of a cash card in the cash_card_outbox table. It must be called in the
+ * transaction of the change, so the change and its event commit or roll back together, after the
+ * card row has been written: a concurrent change of the same card then waits for the row lock and
+ * records its event after this one, and the relay keeps them in that order. Updates of many cards
+ * are recorded with one INSERT ... SELECT per chunk, creations and deletions with one JDBC batch.
+ * {@link OutboxRelay} later gives the committed events their position in the change stream.
+ */
+@Component
+public class CashCardOutbox {
+
+    private static final String INSERT_SQL = "INSERT INTO cash_card_outbox(owner, card_id, type, amount, version, created_at) "
+            + "VALUES (:owner, :id, :type, :amount, :version, CURRENT_TIMESTAMP)";
+    private static final String INSERT_SELECT_SQL = "INSERT INTO cash_card_outbox(owner, card_id, type, amount, version, created_at) "
+            + "SELECT owner, id, :type, amount, version, CURRENT_TIMESTAMP FROM cash_card WHERE id IN (:ids) AND owner = :owner";
+    private static final String INSERT_DELETED_SQL = "INSERT INTO cash_card_outbox(owner, card_id, type, created_at) "
+            + "VALUES (:owner, :id, 'DELETED', CURRENT_TIMESTAMP)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public CashCardOutbox(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Record a created or updated card, with the amount and version it was written with.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void written(CashCardChangeDTO.Type type, CashCard cashCard) {
+        jdbcTemplate.update(INSERT_SQL, parameters(type, cashCard));
+    }
+
+    /**
+     * Record created or updated cards with one JDBC batch, once they are flushed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void written(CashCardChangeDTO.Type type, List<CashCard> cashCards) {
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[cashCards.size()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = parameters(type, cashCards.get(i));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+    }
+
+    private static MapSqlParameterSource parameters(CashCardChangeDTO.Type type, CashCard cashCard) {
+        return new MapSqlParameterSource()
+                .addValue("owner", cashCard.getOwner())
+                .addValue("id", cashCard.getId())
+                .addValue("type", type.name())
+                .addValue("amount", cashCard.getAmount())
+                .addValue("version", cashCard.getVersion());
+    }
+
+    /**
+     * Record the updates of the owner's cards, as they are in the table now.
+     * @param ids ids of updated cards, at most one IN-list worth
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void updated(String owner, Collection<Long> ids) {
+        jdbcTemplate.update(INSERT_SELECT_SQL, new MapSqlParameterSource()
+                .addValue("type", CashCardChangeDTO.Type.UPDATED.name())
+                .addValue("ids", ids)
+                .addValue("owner", owner));
+    }
+
+    /**
+     * Record the deletion of the owner's cards, once they are deleted, with one JDBC batch.
+     * @param ids ids of the deleted cards
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleted(String owner, Collection<Long> ids) {
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            batch[i++] = new MapSqlParameterSource().addValue("owner", owner).addValue("id", id);
+        }
+        jdbcTemplate.batchUpdate(INSERT_DELETED_SQL, batch);
+    }
+}
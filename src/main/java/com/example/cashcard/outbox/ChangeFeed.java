@@ -0,0 +1,251 @@
+package com.example.cashcard.outbox;
+
+import com.example.cashcard.dto.CashCardChangeDTO;
+import com.example.cashcard.dto.CashCardChangesDTO;
+import com.example.cashcard.error.ChangesExpiredException;
+import com.example.cashcard.sharding.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Change stream of an owner's cash cards, read from the published outbox events.
+ * <p>
+ * A reader asks for the changes after the last position it has seen. Long-poll readers and
+ * Server-Sent Events subscribers that are waiting for changes register a listener, so no request
+ * thread is held while waiting. Once {@link OutboxRelay} has published events of the owner, the
+ * listeners re-read the outbox and write to their clients on a bounded pool of
+ * {@code cashcard.changes.listener-threads}, a slow SSE client never holds up the relay or the
+ * other owners. A listener is queued at most once however many batches are published before it
+ * runs. Positions purged by the retention cannot be served, the reader gets a
+ * {@link ChangesExpiredException} and has to resynchronize with GET /cashcards.
+ */
+@Component
+public class ChangeFeed implements DisposableBean {
+
+    private static final String READ_SQL = "SELECT seq, type, card_id, amount, version FROM cash_card_outbox "
+            + "WHERE owner = ? AND seq > ? ORDER BY seq LIMIT ?";
+    private static final String POSITIONS_SQL = "SELECT last_seq, purged_seq FROM cash_card_outbox_relay WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration maxWait;
+    private final Duration sseTimeout;
+    private final ConcurrentHashMap<String, Set<Listener>> listeners = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+    @Autowired
+    public ChangeFeed(JdbcTemplate jdbcTemplate,
+                      @Value("${cashcard.changes.max-wait:30s}") Duration maxWait,
+                      @Value("${cashcard.changes.sse-timeout:30m}") Duration sseTimeout,
+                      @Value("${cashcard.changes.listener-threads:4}") int listenerThreads,
+                      @Value("${cashcard.changes.listener-queue:10000}") int listenerQueue) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxWait = maxWait;
+        this.sseTimeout = sseTimeout;
+        this.executor = new ThreadPoolExecutor(listenerThreads, listenerThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(listenerQueue),
+                Thread.ofPlatform().name("cashcard-changes-", 0).daemon().factory());
+    }
+
+    /**
+     * Position of the last published change, a reader starting from it only gets the changes to
+     * come.
+     */
+    public long head() {
+        return jdbcTemplate.queryForObject(POSITIONS_SQL, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    /**
+     * Read the owner's changes after a position, in order.
+     * @param since last position seen by the reader
+     * @param limit maximum number of changes
+     * @throws ChangesExpiredException if changes after since have been purged
+     */
+    public List<CashCardChangeDTO> read(String owner, long since, int limit) {
+        long purged = jdbcTemplate.queryForObject(POSITIONS_SQL, (rs, rowNum) -> rs.getLong(2));
+        if (since < purged) {
+            throw new ChangesExpiredException("Changes up to position " + purged
+                    + " are no longer available, reload the cashcards and read the changes from the current position");
+        }
+        return jdbcTemplate.query(READ_SQL, (rs, rowNum) -> new CashCardChangeDTO(rs.getLong(1),
+                CashCardChangeDTO.Type.valueOf(rs.getString(2)), rs.getLong(3),
+                rs.getObject(4, Long.class), rs.getObject(5, Long.class)), owner, since, limit);
+    }
+
+    /**
+     * Long-poll: answer with the owner's changes after since as soon as there is one, or with no
+     * change once wait has elapsed.
+     * @param wait how long to wait for a change, capped by {@code cashcard.changes.max-wait}
+     */
+    public DeferredResult<CashCardChangesDTO> poll(String owner, long since, int limit, Duration wait) {
+        Duration timeout = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        DeferredResult<CashCardChangesDTO> result = new DeferredResult<>(Math.max(timeout.toMillis(), 1),
+                () -> new CashCardChangesDTO(List.of(), since));
+        List<CashCardChangeDTO> changes = read(owner, since, limit);
+        if (!changes.isEmpty() || timeout.isZero()) {
+            result.setResult(page(changes, since));
+            return result;
+        }
+        Runnable listener = () -> {
+            try {
+                List<CashCardChangeDTO> published = read(owner, since, limit);
+                if (!published.isEmpty()) {
+                    result.setResult(page(published, since));
+                }
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            }
+        };
+        result.onCompletion(subscribe(owner, listener));
+        // events published between the first read and the subscription
+        listener.run();
+        return result;
+    }
+
+    /**
+     * Server-Sent Events: send the owner's changes after since, then every change as it is
+     * published, one event per change with its position as the event id.
+     */
+    public SseEmitter stream(String owner, long since, int batchSize) {
+        List<CashCardChangeDTO> backlog = read(owner, since, batchSize);
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        Subscription subscription = new Subscription(owner, since, batchSize, emitter);
+        Runnable unsubscribe = subscribe(owner, subscription::drain);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe.run());
+        subscription.send(backlog);
+        subscription.drain();
+        return emitter;
+    }
+
+    /**
+     * Queue the listeners of the owners whose changes have just been published, they run on the
+     * listener pool bound to the shard the events were published on.
+     */
+    void published(Collection<String> owners) {
+        for (String owner : owners) {
+            Set<Listener> ownerListeners = listeners.get(owner);
+            if (ownerListeners != null) {
+                ownerListeners.forEach(Listener::wake);
+            }
+        }
+    }
+
+    private Runnable subscribe(String owner, Runnable callback) {
+        Listener listener = new Listener(callback);
+        listeners.computeIfAbsent(owner, key -> ConcurrentHashMap.newKeySet()).add(listener);
+        return () -> listeners.computeIfPresent(owner, (key, ownerListeners) -> {
+            ownerListeners.remove(listener);
+            return ownerListeners.isEmpty() ? null : ownerListeners;
+        });
+    }
+
+    private static CashCardChangesDTO page(List<CashCardChangeDTO> changes, long since) {
+        return new CashCardChangesDTO(changes, changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A waiting reader, queued on the listener pool when its owner has new changes.
+     */
+    private final class Listener {
+
+        private final Runnable callback;
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        Listener(Runnable callback) {
+            this.callback = callback;
+        }
+
+        void wake() {
+            if (!queued.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(Shards.bindToCurrentShard(this::run));
+            } catch (RejectedExecutionException e) {
+                // the reader catches up with the next publication of its owner
+                queued.set(false);
+                log.warn("Change listener queue is full, a reader is woken up later");
+            }
+        }
+
+        private void run() {
+            // cleared first, a publication while the callback runs queues it again
+            queued.set(false);
+            callback.run();
+        }
+    }
+
+    /**
+     * Position of one SSE subscriber. The backlog is sent on the request thread and the following
+     * changes on the listener pool, drains are serialized so every change is sent once and in order.
+     */
+    private final class Subscription {
+
+        private final String owner;
+        private final int batchSize;
+        private final SseEmitter emitter;
+        private long position;
+        private boolean closed;
+
+        Subscription(String owner, long since, int batchSize, SseEmitter emitter) {
+            this.owner = owner;
+            this.position = since;
+            this.batchSize = batchSize;
+            this.emitter = emitter;
+        }
+
+        synchronized void drain() {
+            try {
+                while (!closed && send(read(owner, position, batchSize)) == batchSize) {
+                    // a full batch, there may be more
+                }
+            } catch (RuntimeException e) {
+                closed = true;
+                emitter.completeWithError(e);
+            }
+        }
+
+        synchronized int send(List<CashCardChangeDTO> changes) {
+            for (CashCardChangeDTO change : changes) {
+                if (closed || change.getSeq() <= position) {
+                    continue;
+                }
+                try {
+                    emitter.send(SseEmitter.event().id(String.valueOf(change.getSeq())).name("change").data(change));
+                    position = change.getSeq();
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away, the emitter completes and unsubscribes
+                    log.debug("Change stream of {} closed: {}", owner, e.getMessage());
+                    closed = true;
+                }
+            }
+            return changes.size();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.cashcard.outbox;
+
+import com.example.cashcard.sharding.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publishes the committed outbox events in batches: each run gives the events without a position
+ * the next positions of the change stream, then wakes up the {@link ChangeFeed} readers of their
+ * owners.
+ * <p>
+ * Outbox ids are allocated when a transaction writes, not when it commits, so an event with a
+ * smaller id can become visible after one with a larger id. Positions are only given to visible
+ * events and every run continues from the last position given, which is kept in the locked
+ * cash_card_outbox_relay row: a reader that has read up to position n finds every later event
+ * above n, even with a relay running on several instances. Two changes of the same card are
+ * ordered by the row lock of the card, so their events keep the order of the changes.
+ * <p>
+ * With sharding every shard has its own outbox and positions, which is enough since the changes
+ * of an owner are all on the owner's shard. Each run relays the shards one after the other, the
+ * readers woken up by a shard read from that same shard.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final String LOCK_SQL = "SELECT last_seq FROM cash_card_outbox_relay WHERE id = 1 FOR UPDATE";
+    private static final String PENDING_SQL = "SELECT id, owner FROM cash_card_outbox WHERE seq IS NULL ORDER BY id LIMIT ?";
+    private static final String ASSIGN_SQL = "UPDATE cash_card_outbox SET seq = ? WHERE id = ?";
+    private static final String ADVANCE_SQL = "UPDATE cash_card_outbox_relay SET last_seq = ? WHERE id = 1";
+    private static final String LAST_EXPIRED_SQL = "SELECT MAX(seq) FROM cash_card_outbox WHERE seq IS NOT NULL AND created_at <= ?";
+    private static final String PURGE_SQL = "DELETE FROM cash_card_outbox WHERE seq <= ?";
+    private static final String PURGED_SQL = "UPDATE cash_card_outbox_relay SET purged_seq = ? WHERE id = 1";
+
+    private record Pending(long id, String owner) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChangeFeed changeFeed;
+    private final Shards shards;
+    private final int batchSize;
+    private final Duration retention;
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    @Autowired
+    public OutboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, ChangeFeed changeFeed,
+                       Shards shards,
+                       @Value("${cashcard.outbox.batch-size:1000}") int batchSize,
+                       @Value("${cashcard.outbox.retention:7d}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changeFeed = changeFeed;
+        this.shards = shards;
+        this.batchSize = batchSize;
+        this.retention = retention;
+    }
+
+    /**
+     * Publish every event committed since the last run, in batches of {@code cashcard.outbox.batch-size}.
+     */
+    @Scheduled(fixedDelayString = "${cashcard.outbox.relay-interval:PT0.2S}",
+            initialDelayString = "${cashcard.outbox.relay-interval:PT0.2S}")
+    public void relay() {
+        shards.forEachShard(shard -> {
+            int published;
+            do {
+                Set<String> owners = new HashSet<>();
+                published = transactionTemplate.execute(status -> publishBatch(owners));
+                // readers are woken up once the positions are committed and visible to them
+                changeFeed.published(owners);
+            } while (published == batchSize);
+        });
+    }
+
+    private int publishBatch(Set<String> owners) {
+        long lastSeq = jdbcTemplate.queryForObject(LOCK_SQL, Long.class);
+        List<Pending> pending = jdbcTemplate.query(PENDING_SQL,
+                (rs, rowNum) -> new Pending(rs.getLong(1), rs.getString(2)), batchSize);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> positions = new ArrayList<>(pending.size());
+        for (Pending event : pending) {
+            positions.add(new Object[]{++lastSeq, event.id()});
+            owners.add(event.owner());
+        }
+        jdbcTemplate.batchUpdate(ASSIGN_SQL, positions);
+        jdbcTemplate.update(ADVANCE_SQL, lastSeq);
+        log.debug("Published {} outbox events up to position {}", pending.size(), lastSeq);
+        return pending.size();
+    }
+
+    /**
+     * Delete the published events older than {@code cashcard.outbox.retention}. A reader still
+     * behind them is told to resynchronize, see {@link ChangeFeed#read(String, long, int)}.
+     */
+    @Scheduled(fixedDelayString = "${cashcard.outbox.purge-interval:PT10M}")
+    public void purgeExpired() {
+        shards.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject(LOCK_SQL, Long.class);
+            Long lastExpired = jdbcTemplate.queryForObject(LAST_EXPIRED_SQL, Long.class,
+                    Timestamp.from(Instant.now().minus(retention)));
+            if (lastExpired == null) {
+                return;
+            }
+            int purged = jdbcTemplate.update(PURGE_SQL, lastExpired);
+            jdbcTemplate.update(PURGED_SQL, lastExpired);
+            log.debug("Purged {} outbox events up to position {} of shard {}", purged, lastExpired, shard);
+        }));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.cashcard.repository;
+
+/**
+ * Count, sum, min and max of the amount, in minor units, of a set of cashcards.
+ */
+public interface CashCardAggregate {
+    long getCards();
+    long getTotal();
+    Long getLow();
+    Long getHigh();
+}
@@ -0,0 +1,30 @@
+package com.example.cashcard.repository;
+
+import com.example.cashcard.model.CashCard;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Set-based write operations that bypass the JPA persistence context, or keep it small.
+ * Spring Data picks up {@link CashCardBulkRepositoryImpl} as the fragment implementation.
+ */
+public interface CashCardBulkRepository {
+
+    /**
+     * Update the amount of every given cashcard with JDBC batching, one prepared statement
+     * for the whole list. The owner of each card is part of the WHERE clause.
+     * @param cashCards cashcards holding the id, the new amount and the owner
+     * @return number of rows updated
+     */
+    int batchUpdateAmount(List<CashCard> cashCards);
+
+    /**
+     * Insert new cashcards, {@code cashcard.bulk.jdbc-batch-size} at a time. Their ids come from
+     * the pooled cash_card_seq, so Hibernate sends every group as one JDBC batch, and the group is
+     * flushed and detached before the next one is persisted.
+     * @param cashCards new cashcards without id, they get theirs
+     * @param written called with every flushed group, while its rows are locked in the transaction
+     */
+    void insertAll(List<CashCard> cashCards, Consumer<List<CashCard>> written);
+}
@@ -0,0 +1,54 @@
+package com.example.cashcard.repository;
+
+import com.example.cashcard.model.CashCard;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public class CashCardBulkRepositoryImpl implements CashCardBulkRepository {
+
+    private static final String UPDATE_AMOUNT_SQL = "UPDATE cash_card SET amount = ?, version = version + 1 WHERE id = ? AND owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    public CashCardBulkRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+                                      @Value("${cashcard.bulk.jdbc-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public int batchUpdateAmount(List<CashCard> cashCards) {
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_AMOUNT_SQL, cashCards, batchSize, (ps, cashCard) -> {
+            ps.setLong(1, cashCard.getAmount());
+            ps.setLong(2, cashCard.getId());
+            ps.setString(3, cashCard.getOwner());
+        });
+        int updated = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // some drivers report SUCCESS_NO_INFO (-2) instead of the row count
+                updated += count < 0 ? 1 : count;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void insertAll(List<CashCard> cashCards, Consumer<List<CashCard>> written) {
+        for (int from = 0; from < cashCards.size(); from += batchSize) {
+            List<CashCard> group = cashCards.subList(from, Math.min(from + batchSize, cashCards.size()));
+            group.forEach(entityManager::persist);
+            entityManager.flush();
+            written.accept(group);
+            // the persistence context does not grow with the number of cards
+            entityManager.clear();
+        }
+    }
+}
@@ -1,20 +1,53 @@
 package com.example.cashcard.repository;
+import com.example.cashcard.dto.CashCardResponseDTO;
 import com.example.cashcard.model.CashCard;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface CashCardRepository extends JpaRepository<CashCard, Long> {
+public interface CashCardRepository extends JpaRepository<CashCard, Long>, CashCardBulkRepository {
     Optional<CashCard> findByIdAndOwner(Long Id, String owner);
     Page<CashCard> findByOwner(String owner, Pageable pageable);
+    Window<CashCard> findByOwner(String owner, ScrollPosition position, Sort sort, Limit limit);
     boolean existsByIdAndOwner(Long id, String owner);
 
+    // SELECT ... FOR UPDATE, the row stays locked until the transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CashCard c WHERE c.id = :id AND c.owner = :owner")
+    Optional<CashCard> findByIdAndOwnerForUpdate(Long id, String owner);
+
+    @Query(nativeQuery = true, value = "SELECT COUNT(*) AS cards, SUM(amount) AS total, MIN(amount) AS low, MAX(amount) AS high "
+            + "FROM cash_card WHERE id IN :ids AND owner = :owner")
+    CashCardAggregate aggregateByIdInAndOwner(Collection<Long> ids, String owner);
+
+    @Modifying
+    @Query("DELETE FROM CashCard c WHERE c.id IN :ids AND c.owner = :owner")
+    int deleteByIdInAndOwner(Collection<Long> ids, String owner);
+
+    // DTO projection: rows are not attached to the persistence context, so the stream runs in constant memory
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.cashcard.dto.CashCardResponseDTO(c.id, c.amount) FROM CashCard c WHERE c.owner = :owner ORDER BY c.id")
+    Stream<CashCardResponseDTO> streamByOwner(String owner);
+
     @Query("SELECT c FROM CashCard c WHERE c.amount BETWEEN :min AND :max")
-    List<CashCard> findByAmountRange(Double min, Double max, Pageable pageable);
+    List<CashCard> findByAmountRange(long min, long max, Pageable pageable);
+    Window<CashCard> findByAmountBetween(long min, long max, ScrollPosition position, Sort sort, Limit limit);
 }
@@ -0,0 +1,27 @@
+package com.example.cashcard.repository;
+
+/**
+ * Writes of the owner summary that run on the JDBC connection of the transaction, outside the
+ * JPA persistence context. Spring Data picks up {@link OwnerSummaryDeltaRepositoryImpl} as the
+ * fragment implementation.
+ */
+public interface OwnerSummaryDeltaRepository {
+
+    /**
+     * Add a change of the owner's cashcards to the summary, creating the row on the first card.
+     * Count and total are moved by the deltas. The min (max) is lowered (raised) to the added cards,
+     * and only when a removed card held the current min (max) is it recomputed from the owner's
+     * remaining cards, so pending cash_card writes are flushed first. Two first writes of the same
+     * owner can both try to insert the row: the one that loses the primary key runs the MERGE again
+     * and updates the row the other one committed.
+     * @param cards number of cards added, negative for removed cards
+     * @param total sum of the amounts added minus the amounts removed, in minor units
+     * @param addedLow lowest amount added, null if none
+     * @param addedHigh highest amount added, null if none
+     * @param removedLow lowest amount removed, null if none
+     * @param removedHigh highest amount removed, null if none
+     * @return number of rows written, 1
+     */
+    int applyDelta(String owner, long cards, long total, Long addedLow, Long addedHigh,
+                   Long removedLow, Long removedHigh);
+}
@@ -0,0 +1,65 @@
+package com.example.cashcard.repository;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+public class OwnerSummaryDeltaRepositoryImpl implements OwnerSummaryDeltaRepository {
+
+    private static final String APPLY_DELTA_SQL = """
+            MERGE INTO owner_summary s
+            USING (VALUES (CAST(:owner AS VARCHAR(256)))) AS d(owner) ON s.owner = d.owner
+            WHEN MATCHED THEN UPDATE SET
+                card_count = s.card_count + :cards,
+                total_amount = s.total_amount + CAST(:total AS BIGINT),
+                min_amount = CASE
+                    WHEN CAST(:removedLow AS BIGINT) IS NOT NULL AND s.min_amount >= CAST(:removedLow AS BIGINT)
+                        THEN (SELECT MIN(c.amount) FROM cash_card c WHERE c.owner = :owner)
+                    WHEN CAST(:addedLow AS BIGINT) IS NOT NULL AND (s.min_amount IS NULL OR CAST(:addedLow AS BIGINT) < s.min_amount)
+                        THEN CAST(:addedLow AS BIGINT)
+                    ELSE s.min_amount END,
+                max_amount = CASE
+                    WHEN CAST(:removedHigh AS BIGINT) IS NOT NULL AND s.max_amount <= CAST(:removedHigh AS BIGINT)
+                        THEN (SELECT MAX(c.amount) FROM cash_card c WHERE c.owner = :owner)
+                    WHEN CAST(:addedHigh AS BIGINT) IS NOT NULL AND (s.max_amount IS NULL OR CAST(:addedHigh AS BIGINT) > s.max_amount)
+                        THEN CAST(:addedHigh AS BIGINT)
+                    ELSE s.max_amount END
+            WHEN NOT MATCHED THEN INSERT (owner, card_count, total_amount, min_amount, max_amount)
+                VALUES (:owner, :cards, CAST(:total AS BIGINT), CAST(:addedLow AS BIGINT), CAST(:addedHigh AS BIGINT))
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private static final Logger log = LoggerFactory.getLogger(OwnerSummaryDeltaRepositoryImpl.class);
+
+    public OwnerSummaryDeltaRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public int applyDelta(String owner, long cards, long total, Long addedLow, Long addedHigh,
+                          Long removedLow, Long removedHigh) {
+        // the min and max are recomputed from the cash_card rows, write the pending ones first
+        entityManager.flush();
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("owner", owner)
+                .addValue("cards", cards)
+                .addValue("total", total)
+                .addValue("addedLow", addedLow)
+                .addValue("addedHigh", addedHigh)
+                .addValue("removedLow", removedLow)
+                .addValue("removedHigh", removedHigh);
+        try {
+            return jdbcTemplate.update(APPLY_DELTA_SQL, parameters);
+        } catch (DuplicateKeyException e) {
+            // a concurrent first write of the owner inserted the row and committed, H2 only rolled
+            // back the failed statement, so the MERGE now takes the update branch
+            log.debug("Owner summary of {} was created concurrently, applying the delta again", owner);
+            return jdbcTemplate.update(APPLY_DELTA_SQL, parameters);
+        }
+    }
+}
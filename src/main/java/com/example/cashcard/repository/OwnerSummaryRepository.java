@@ -0,0 +1,7 @@
+package com.example.cashcard.repository;
+
+import com.example.cashcard.model.OwnerSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OwnerSummaryRepository extends JpaRepository<OwnerSummary, String>, OwnerSummaryDeltaRepository {
+}
@@ -0,0 +1,134 @@
+package com.example.cashcard.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived, bounded store of verified logins, so a client sending the same HTTP Basic credentials
+ * on every request pays the BCrypt check once per {@code cashcard.auth.cache.ttl}.
+ * <p>
+ * Credentials are never kept: entries are keyed by an HMAC-SHA256 of the username and password under
+ * a random key generated at startup. The store also holds the opaque bearer tokens handed out by
+ * {@code POST /auth/token}. Both are dropped for a user with {@link #invalidate(String)} whenever the
+ * user changes, and hit/miss metrics are published as the "auth-credentials" and "auth-tokens" caches.
+ */
+@Component
+public class AuthenticationCache {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final int TOKEN_BYTES = 32;
+
+    private final boolean enabled;
+    private final SecretKeySpec digestKey;
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, Authentication> credentials;
+    private final Cache<String, Authentication> tokens;
+    // bumped by every invalidation, lets a login that overlapped a user change drop its own entry
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AuthenticationCache(@Value("${cashcard.auth.cache.enabled:true}") boolean enabled,
+                               @Value("${cashcard.auth.cache.maximum-size:10000}") long maximumSize,
+                               @Value("${cashcard.auth.cache.ttl:60s}") Duration ttl,
+                               @Value("${cashcard.auth.token.ttl:15m}") Duration tokenTtl,
+                               MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, HMAC);
+        this.credentials = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(tokenTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, credentials, "auth-credentials");
+        CaffeineCacheMetrics.monitor(meterRegistry, tokens, "auth-tokens");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the authentication of an earlier successful login with the same credentials, or null
+     */
+    public Authentication getVerified(String username, String password) {
+        return credentials.getIfPresent(digest(username, password));
+    }
+
+    /**
+     * Remember a successful login. Must be read with {@link #invalidationCount()} before the
+     * credentials are checked, the entry is dropped if the user changed in the meantime.
+     */
+    public void putVerified(String username, String password, Authentication authentication, long invalidationsBeforeCheck) {
+        String key = digest(username, password);
+        credentials.put(key, authentication);
+        if (invalidations.get() != invalidationsBeforeCheck) {
+            credentials.invalidate(key);
+        }
+    }
+
+    public long invalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Issue a new opaque token for an authenticated user.
+     * @return the token, 256 random bits encoded as Base64url
+     */
+    public String issueToken(Authentication authentication) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tokens.put(token, authentication);
+        return token;
+    }
+
+    /**
+     * @return the authentication the token was issued for, or null if it is unknown or expired
+     */
+    public Authentication getToken(String token) {
+        return tokens.getIfPresent(token);
+    }
+
+    /**
+     * Forget every verified login and every token of the user, called when the user is updated,
+     * deleted or changes password.
+     * @param username the user that changed
+     */
+    public void invalidate(String username) {
+        invalidations.incrementAndGet();
+        credentials.asMap().values().removeIf(authentication -> authentication.getName().equals(username));
+        tokens.asMap().values().removeIf(authentication -> authentication.getName().equals(username));
+    }
+
+    private String digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(digestKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.cashcard.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+/**
+ * The authentication of a request that presented a bearer token. It carries the principal and
+ * authorities of the Basic login the token was issued for, and tells {@code POST /auth/token}
+ * that no password was checked for this request.
+ */
+public class BearerTokenAuthentication extends AbstractAuthenticationToken {
+
+    private final Authentication issuedFor;
+
+    public BearerTokenAuthentication(Authentication issuedFor) {
+        super(issuedFor.getAuthorities());
+        this.issuedFor = issuedFor;
+        setDetails(issuedFor.getDetails());
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return issuedFor.getPrincipal();
+    }
+}
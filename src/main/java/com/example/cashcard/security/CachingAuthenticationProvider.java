@@ -0,0 +1,50 @@
+package com.example.cashcard.security;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Puts an {@link AuthenticationCache} in front of another provider, usually a
+ * {@link org.springframework.security.authentication.dao.DaoAuthenticationProvider}. A login that
+ * was verified recently is answered from the cache, only unknown or wrong credentials reach the
+ * delegate and its password encoder. Failed logins are never cached.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final AuthenticationCache authenticationCache;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, AuthenticationCache authenticationCache) {
+        this.delegate = delegate;
+        this.authenticationCache = authenticationCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!authenticationCache.isEnabled() || !(authentication.getCredentials() instanceof String password)) {
+            return delegate.authenticate(authentication);
+        }
+        String username = authentication.getName();
+        Authentication verified = authenticationCache.getVerified(username, password);
+        if (verified != null) {
+            return verified;
+        }
+        long invalidations = authenticationCache.invalidationCount();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            // cache a copy without credentials, the ProviderManager erases the ones of the returned token
+            UsernamePasswordAuthenticationToken cached = UsernamePasswordAuthenticationToken.authenticated(
+                    result.getPrincipal(), null, result.getAuthorities());
+            cached.setDetails(result.getDetails());
+            authenticationCache.putVerified(username, password, cached, invalidations);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.cashcard.service;
+
+import com.example.cashcard.sharding.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Equi-width histogram of cashcard amounts, used to estimate how many cards fall in an amount range
+ * without counting them. It is rebuilt in the background with one aggregate query, so an estimate
+ * can be up to one refresh interval stale. With sharding the bounds of every shard are read first,
+ * then every shard counts its cards in the same buckets and the counts are added up.
+ */
+@Component
+public class AmountHistogram {
+
+    private static final String BOUNDS_SQL = "SELECT MIN(amount) AS lo, MAX(amount) AS hi FROM cash_card";
+    private static final String BUCKETS_SQL = "SELECT b, COUNT(*) FROM (SELECT LEAST(CAST(FLOOR((amount - ?) / ?) AS INT), ?) AS b "
+            + "FROM cash_card) t GROUP BY b";
+
+    private record Snapshot(double min, double width, long[] counts) {}
+
+    private static final Snapshot EMPTY = new Snapshot(0, 0, new long[0]);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final int buckets;
+    private volatile Snapshot snapshot = EMPTY;
+    private static final Logger log = LoggerFactory.getLogger(AmountHistogram.class);
+
+    @Autowired
+    public AmountHistogram(JdbcTemplate jdbcTemplate, Shards shards,
+                           @Value("${cashcard.histogram.buckets:100}") int buckets) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Rebuild the histogram from the cash_card table.
+     */
+    @Scheduled(fixedDelayString = "${cashcard.histogram.refresh-interval:PT5M}")
+    public void refresh() {
+        long start = System.nanoTime();
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Map<String, Object> bounds : shards.onEachShard(shard -> jdbcTemplate.queryForMap(BOUNDS_SQL))) {
+            if (bounds.get("lo") != null) {
+                min = Math.min(min, ((Number) bounds.get("lo")).doubleValue());
+                max = Math.max(max, ((Number) bounds.get("hi")).doubleValue());
+            }
+        }
+        if (min > max) {
+            snapshot = EMPTY;
+            return;
+        }
+        double lo = min;
+        // all amounts equal: one bucket holding everything
+        double width = max > min ? (max - min) / buckets : 1;
+        List<long[]> shardCounts = shards.onEachShard(shard -> {
+            long[] counts = new long[buckets];
+            jdbcTemplate.query(BUCKETS_SQL, rs -> {
+                counts[rs.getInt(1)] = rs.getLong(2);
+            }, lo, width, buckets - 1);
+            return counts;
+        });
+        long[] counts = new long[buckets];
+        for (long[] shard : shardCounts) {
+            for (int i = 0; i < buckets; i++) {
+                counts[i] += shard[i];
+            }
+        }
+        snapshot = new Snapshot(min, width, counts);
+        log.debug("Amount histogram rebuilt in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Estimate the number of cashcards with an amount between min and max, inclusive. Buckets inside
+     * the range are counted in full, the two buckets on its edges are prorated assuming amounts are
+     * evenly spread within a bucket.
+     * @param min lower bound of the range
+     * @param max upper bound of the range
+     * @return estimated number of cashcards, 0 before the first refresh
+     */
+    public long estimate(long min, long max) {
+        Snapshot current = snapshot;
+        double estimate = 0;
+        for (int i = 0; i < current.counts().length; i++) {
+            if (current.counts()[i] == 0) {
+                continue;
+            }
+            double lo = current.min() + i * current.width();
+            double hi = lo + current.width();
+            double overlap = Math.min(hi, max) - Math.max(lo, min);
+            if (overlap >= current.width()) {
+                estimate += current.counts()[i];
+            } else if (overlap > 0) {
+                estimate += current.counts()[i] * overlap / current.width();
+            }
+        }
+        return Math.round(estimate);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.cashcard.service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * State of an asynchronous bulk update or delete. The job is only written by the worker running it,
+ * requests polling its progress read a consistent enough snapshot through the volatile fields.
+ */
+public class BulkJob {
+
+    public enum Type { UPDATE, DELETE }
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final UUID id = UUID.randomUUID();
+    private final String owner;
+    private final Type type;
+    private final long total;
+    private volatile Status status = Status.QUEUED;
+    private volatile long processed;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    BulkJob(String owner, Type type, long total) {
+        this.owner = owner;
+        this.type = type;
+        this.total = total;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void advance(long committed) {
+        processed += committed;
+    }
+
+    void succeed() {
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.cashcard.service;
+
+import com.example.cashcard.dto.BulkRequestReader;
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.error.InvalidBulkRequestException;
+import com.example.cashcard.error.TooManyJobsException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * This service runs very large bulk updates and deletes in the background. Every id is checked for
+ * ownership first, then the list is applied in chunks of {@code cashcard.jobs.chunk-size}, each
+ * chunk in its own transaction, so no transaction grows with the size of the request. An owner can
+ * have at most {@code cashcard.jobs.max-per-owner} jobs queued or running, finished jobs are kept
+ * for {@code cashcard.jobs.retention} so their outcome can be read.
+ * The body of a job is copied to a {@link BulkSpool} file while the request is read, up to
+ * {@code cashcard.jobs.max-items} items, and read back one chunk at a time by each pass of the job.
+ * A job is not atomic: if a chunk fails (e.g. a card deleted since the check), the chunks before
+ * it stay committed and the job reports how many items were processed.
+ */
+@Service
+public class BulkJobService {
+
+    private final CashCardService cashCardService;
+    private final TaskExecutor executor;
+    private final int chunkSize;
+    private final long maxItems;
+    private final int spillThreshold;
+    private final int maxPerOwner;
+    private final Duration retention;
+    private final Map<UUID, BulkJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> activeJobs = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(BulkJobService.class);
+
+    @Autowired
+    public BulkJobService(CashCardService cashCardService,
+                          @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor executor,
+                          @Value("${cashcard.jobs.chunk-size:10000}") int chunkSize,
+                          @Value("${cashcard.jobs.max-items:10000000}") long maxItems,
+                          @Value("${cashcard.bulk.spill-threshold:1048576}") int spillThreshold,
+                          @Value("${cashcard.jobs.max-per-owner:2}") int maxPerOwner,
+                          @Value("${cashcard.jobs.retention:1h}") Duration retention,
+                          MeterRegistry meterRegistry) {
+        this.cashCardService = cashCardService;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxItems = maxItems;
+        this.spillThreshold = spillThreshold;
+        this.maxPerOwner = maxPerOwner;
+        this.retention = retention;
+        Gauge.builder("cashcard.jobs.active", activeJobs, jobs -> jobs.values().stream().mapToInt(Integer::intValue).sum())
+                .description("Bulk jobs queued or running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a bulk update, the last amount of a repeated id wins like in {@link CashCardService#bulkUpdate}.
+     * @param reader bulk update body, copied to a temporary file before the job is queued
+     * @param owner principal
+     * @return the queued job, empty if the body is an empty array
+     * @throws TooManyJobsException if the owner already has the maximum number of active jobs
+     * @throws InvalidBulkRequestException if the body is invalid or longer than {@code cashcard.jobs.max-items}
+     */
+    public Optional<BulkJob> submitUpdate(BulkRequestReader reader, String owner) {
+        return submit(owner, BulkJob.Type.UPDATE, () -> BulkSpool.ofUpdates(reader, chunkSize, maxItems), (job, spool) -> {
+            checkOwnership(spool, owner);
+            spool.forEachChunk(chunkSize, (ids, amounts, count) -> {
+                List<CashCardBulkUpdateDTO> chunk = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    chunk.add(new CashCardBulkUpdateDTO(ids[i], amounts[i]));
+                }
+                cashCardService.bulkUpdate(chunk, owner);
+                job.advance(count);
+            });
+        });
+    }
+
+    /**
+     * Queue a bulk delete, repeated ids are deleted once: the ids deleted by the job are kept in a
+     * {@link SpillingIdSet} and skipped by the later chunks.
+     * @param reader bulk delete body, copied to a temporary file before the job is queued
+     * @param owner principal
+     * @return the queued job, empty if the body is an empty array
+     * @throws TooManyJobsException if the owner already has the maximum number of active jobs
+     * @throws InvalidBulkRequestException if the body is invalid or longer than {@code cashcard.jobs.max-items}
+     */
+    public Optional<BulkJob> submitDelete(BulkRequestReader reader, String owner) {
+        return submit(owner, BulkJob.Type.DELETE, () -> BulkSpool.ofDeletes(reader, chunkSize, maxItems), (job, spool) -> {
+            checkOwnership(spool, owner);
+            try (SpillingIdSet deleted = new SpillingIdSet(spillThreshold)) {
+                spool.forEachChunk(chunkSize, (ids, amounts, count) -> {
+                    Set<Long> chunk = new LinkedHashSet<>();
+                    for (int i = 0; i < count; i++) {
+                        if (!deleted.contains(ids[i])) {
+                            chunk.add(ids[i]);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        cashCardService.bulkDeleteCashCard(new ArrayList<>(chunk), owner);
+                        deleted.addAll(chunk);
+                    }
+                    // the duplicates are counted as processed with their chunk
+                    job.advance(count);
+                });
+            }
+        });
+    }
+
+    /**
+     * @param id job id
+     * @param owner principal
+     * @return the job, empty if unknown, expired or submitted by another owner
+     */
+    public Optional<BulkJob> find(UUID id, String owner) {
+        return Optional.ofNullable(jobs.get(id)).filter(job -> job.getOwner().equals(owner));
+    }
+
+    /**
+     * Forget the jobs finished for longer than the retention.
+     */
+    @Scheduled(fixedDelayString = "${cashcard.jobs.purge-interval:PT5M}")
+    public void purgeFinished() {
+        Instant expired = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(expired));
+    }
+
+    private Optional<BulkJob> submit(String owner, BulkJob.Type type, Supplier<BulkSpool> body,
+                                     BiConsumer<BulkJob, BulkSpool> work) {
+        reserve(owner);
+        BulkSpool spool;
+        try {
+            spool = body.get();
+        } catch (RuntimeException e) {
+            release(owner);
+            throw e;
+        }
+        if (spool.size() == 0) {
+            spool.close();
+            release(owner);
+            return Optional.empty();
+        }
+        BulkJob job = new BulkJob(owner, type, spool.size());
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, spool, work));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            spool.close();
+            release(owner);
+            throw e;
+        }
+        log.debug("Bulk {} job {} of {} items queued", job.getType(), job.getId(), job.getTotal());
+        return Optional.of(job);
+    }
+
+    private void run(BulkJob job, BulkSpool spool, BiConsumer<BulkJob, BulkSpool> work) {
+        job.start();
+        try {
+            work.accept(job, spool);
+            job.succeed();
+            log.debug("Bulk {} job {} succeeded", job.getType(), job.getId());
+        } catch (IllegalArgumentException e) {
+            job.fail(e.getMessage());
+            log.debug("Bulk {} job {} failed after {} items: {}", job.getType(), job.getId(), job.getProcessed(), e.getMessage());
+        } catch (RuntimeException e) {
+            job.fail("An unexpected error occurred.");
+            log.error("Bulk {} job {} failed after {} items", job.getType(), job.getId(), job.getProcessed(), e);
+        } finally {
+            spool.close();
+            release(job.getOwner());
+        }
+    }
+
+    /**
+     * Check every chunk of the spooled ids for ownership before the first one is applied.
+     */
+    private void checkOwnership(BulkSpool spool, String owner) {
+        spool.forEachChunk(chunkSize, (ids, amounts, count) -> {
+            Set<Long> chunk = new LinkedHashSet<>();
+            for (int i = 0; i < count; i++) {
+                chunk.add(ids[i]);
+            }
+            if (!cashCardService.ownsAll(new ArrayList<>(chunk), owner)) {
+                throw new IllegalArgumentException("One or more cashcards do not exist or not owned.");
+            }
+        });
+    }
+
+    private void reserve(String owner) {
+        activeJobs.compute(owner, (key, active) -> {
+            int count = active == null ? 0 : active;
+            if (count >= maxPerOwner) {
+                throw new TooManyJobsException("At most " + maxPerOwner + " bulk jobs can run at the same time");
+            }
+            return count + 1;
+        });
+    }
+
+    private void release(String owner) {
+        activeJobs.computeIfPresent(owner, (key, active) -> active > 1 ? active - 1 : null);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.cashcard.service;
+
+import com.example.cashcard.dto.BulkRequestReader;
+import com.example.cashcard.error.InvalidBulkRequestException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The items of a bulk job, copied from the request body to a temporary file as primitive longs
+ * while the request is read, so a queued or running job holds one chunk in memory whatever the
+ * size of its list. The body is validated by the {@link BulkRequestReader} as it is copied and at
+ * most {@code maxItems} items are accepted. The file is deleted on {@link #close()}.
+ */
+final class BulkSpool implements AutoCloseable {
+
+    /**
+     * Receives a chunk read back from the file.
+     */
+    @FunctionalInterface
+    interface ChunkConsumer {
+        /**
+         * @param ids ids of the chunk, from index 0
+         * @param amounts amounts in minor units of an update chunk, null for a delete
+         * @param count number of items in the chunk
+         */
+        void accept(long[] ids, long[] amounts, int count);
+    }
+
+    private final Path file;
+    private final boolean updates;
+    private final long size;
+
+    private BulkSpool(Path file, boolean updates, long size) {
+        this.file = file;
+        this.updates = updates;
+        this.size = size;
+    }
+
+    /**
+     * Copy the ids of a bulk delete body.
+     * @throws InvalidBulkRequestException if the body is invalid or has more than maxItems ids
+     */
+    static BulkSpool ofDeletes(BulkRequestReader reader, int chunkSize, long maxItems) {
+        long[] ids = new long[chunkSize];
+        return write(false, maxItems, out -> {
+            int count = reader.readIds(ids);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(ids[i]);
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Copy the ids and amounts of a bulk update body.
+     * @throws InvalidBulkRequestException if the body is invalid or has more than maxItems updates
+     */
+    static BulkSpool ofUpdates(BulkRequestReader reader, int chunkSize, long maxItems) {
+        long[] ids = new long[chunkSize];
+        long[] amounts = new long[chunkSize];
+        return write(true, maxItems, out -> {
+            int count = reader.readUpdates(ids, amounts);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(ids[i]);
+                out.writeLong(amounts[i]);
+            }
+            return count;
+        });
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        int write(DataOutputStream out) throws IOException;
+    }
+
+    private static BulkSpool write(boolean updates, long maxItems, ChunkWriter writer) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("cashcard-job-", ".bin");
+            long size = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                for (int count; (count = writer.write(out)) > 0; ) {
+                    size += count;
+                    if (size > maxItems) {
+                        throw new InvalidBulkRequestException("At most " + maxItems + " items can be submitted in one bulk job");
+                    }
+                }
+            }
+            return new BulkSpool(file, updates, size);
+        } catch (IOException e) {
+            delete(file);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of items copied
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Read the items back in order, in chunks of at most chunkSize.
+     */
+    void forEachChunk(int chunkSize, ChunkConsumer consumer) {
+        long[] ids = new long[chunkSize];
+        long[] amounts = updates ? new long[chunkSize] : null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (long read = 0; read < size; ) {
+                int count = (int) Math.min(chunkSize, size - read);
+                for (int i = 0; i < count; i++) {
+                    ids[i] = in.readLong();
+                    if (updates) {
+                        amounts[i] = in.readLong();
+                    }
+                }
+                consumer.accept(ids, amounts, count);
+                read += count;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        delete(file);
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.cashcard.service;
+
+import com.example.cashcard.dto.CashCardAnalyticsDTO;
+import com.example.cashcard.sharding.Shards;
+import com.example.cashcard.sharding.SortedMerge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Admin wide aggregates over every cashcard: totals, an amount histogram, percentiles and the owners
+ * with the highest balance.
+ * <p>
+ * The id range is split into {@code cashcard.analytics.segments} ranges that are scanned
+ * concurrently on a pool of {@code cashcard.analytics.parallelism} threads. Each segment streams the
+ * amounts of its primary key range with plain JDBC in a read-only transaction, nothing is loaded into
+ * a persistence context, and folds them into a {@link Partial} of primitive counters; the partials
+ * are merged once every segment is done. Each segment is consistent on its own, cards written during
+ * the scan may be seen by one segment and not by another.
+ * <p>
+ * Percentiles are read from a finer equi-width histogram of {@code cashcard.analytics.resolution}
+ * buckets, interpolated within the bucket: they are exact to within (max - min) / resolution.
+ * The top owners come from owner_summary, which already holds the balance of every owner.
+ * <p>
+ * With sharding the bounds are read from every shard, the id range of each shard is split into
+ * segments of its own, and the top owners of each shard are merged.
+ */
+@Service
+public class CashCardAnalytics implements DisposableBean {
+
+    static final int[] PERCENTILES = {50, 90, 95, 99};
+
+    private static final String BOUNDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id, "
+            + "MIN(amount) AS min_amount, MAX(amount) AS max_amount FROM cash_card";
+    private static final String SEGMENT_SQL = "SELECT amount FROM cash_card WHERE id >= ? AND id <= ?";
+    private static final String TOP_OWNERS_SQL = "SELECT owner, card_count, total_amount FROM owner_summary "
+            + "ORDER BY total_amount DESC, owner LIMIT ?";
+    private static final Comparator<CashCardAnalyticsDTO.OwnerBalance> TOP_OWNERS_ORDER =
+            Comparator.comparingLong(CashCardAnalyticsDTO.OwnerBalance::balance).reversed()
+                    .thenComparing(CashCardAnalyticsDTO.OwnerBalance::owner);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Shards shards;
+    private final ExecutorService executor;
+    private final int segments;
+    private final int resolution;
+    private static final Logger log = LoggerFactory.getLogger(CashCardAnalytics.class);
+
+    @Autowired
+    public CashCardAnalytics(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Shards shards,
+                             @Value("${cashcard.analytics.parallelism:4}") int parallelism,
+                             @Value("${cashcard.analytics.segments:16}") int segments,
+                             @Value("${cashcard.analytics.resolution:4096}") int resolution,
+                             @Value("${cashcard.analytics.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shards = shards;
+        // every running segment holds a connection, keep the pool below the connection pool size
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("cashcard-analytics-", 0).daemon().factory());
+        this.segments = segments;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Compute the aggregates of all the cashcards.
+     * @param buckets number of equi-width buckets of the returned histogram
+     * @param top number of owners with the highest balance to return
+     */
+    public CashCardAnalyticsDTO analyze(int buckets, int top) {
+        long start = System.nanoTime();
+        Future<List<CashCardAnalyticsDTO.OwnerBalance>> topOwners = executor.submit(() -> topOwners(top));
+        List<Map<String, Object>> shardBounds = shards.onEachShard(shard -> jdbcTemplate.queryForMap(BOUNDS_SQL));
+        long minAmount = Long.MAX_VALUE;
+        long maxAmount = Long.MIN_VALUE;
+        for (Map<String, Object> bounds : shardBounds) {
+            if (bounds.get("min_id") != null) {
+                minAmount = Math.min(minAmount, ((Number) bounds.get("min_amount")).longValue());
+                maxAmount = Math.max(maxAmount, ((Number) bounds.get("max_amount")).longValue());
+            }
+        }
+        if (minAmount > maxAmount) {
+            return new CashCardAnalyticsDTO(0, 0, null, null, List.of(), List.of(), await(topOwners));
+        }
+
+        List<Future<Partial>> partials = new ArrayList<>(segments * shardBounds.size());
+        // no more buckets than distinct amounts, so that no bucket is empty by construction
+        int histogramBuckets = (int) Math.min(buckets, maxAmount - minAmount + 1);
+        for (int shard = 0; shard < shardBounds.size(); shard++) {
+            Map<String, Object> bounds = shardBounds.get(shard);
+            if (bounds.get("min_id") == null) {
+                continue;
+            }
+            long minId = ((Number) bounds.get("min_id")).longValue();
+            long maxId = ((Number) bounds.get("max_id")).longValue();
+            long segmentSize = Math.max(1, (maxId - minId) / segments + 1);
+            for (long from = minId; from <= maxId; from += segmentSize) {
+                int current = shard;
+                long first = from;
+                long last = Math.min(maxId, from + segmentSize - 1);
+                long lowest = minAmount;
+                long highest = maxAmount;
+                partials.add(executor.submit(() -> Shards.onShard(current,
+                        () -> scan(first, last, lowest, highest, histogramBuckets))));
+                if (last == maxId) {
+                    break;
+                }
+            }
+        }
+        Partial total = new Partial(minAmount, maxAmount, histogramBuckets, resolution);
+        for (Future<Partial> partial : partials) {
+            total.merge(await(partial));
+        }
+        log.debug("Analytics of {} cashcards in {} segments computed in {} ms", total.count, partials.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return total.toDTO(await(topOwners));
+    }
+
+    private Partial scan(long firstId, long lastId, long minAmount, long maxAmount, int buckets) {
+        Partial partial = new Partial(minAmount, maxAmount, buckets, resolution);
+        readOnlyTransaction.executeWithoutResult(status ->
+                streamingJdbcTemplate.query(SEGMENT_SQL, rs -> {
+                    partial.add(rs.getLong(1));
+                }, firstId, lastId));
+        return partial;
+    }
+
+    /**
+     * The top owners of every shard, merged: an owner is on one shard only, so the overall top is
+     * within them.
+     */
+    private List<CashCardAnalyticsDTO.OwnerBalance> topOwners(int top) {
+        List<List<CashCardAnalyticsDTO.OwnerBalance>> shardTops = shards.onEachShard(shard ->
+                readOnlyTransaction.execute(status -> jdbcTemplate.query(TOP_OWNERS_SQL,
+                        (rs, rowNum) -> new CashCardAnalyticsDTO.OwnerBalance(rs.getString(1), rs.getLong(2), rs.getLong(3)),
+                        top)));
+        return SortedMerge.merge(shardTops, TOP_OWNERS_ORDER, 0, top);
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the analytics segments");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Aggregates of one segment, or of several once merged. Amounts outside the bounds read before
+     * the scan, written by a concurrent request, are counted in the first or last bucket.
+     */
+    static final class Partial {
+
+        private final long minAmount;
+        private final double bucketWidth;
+        private final double fineWidth;
+        private final long[] counts;
+        private final long[] fineCounts;
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        Partial(long minAmount, long maxAmount, int buckets, int resolution) {
+            this.minAmount = minAmount;
+            // + 1 so the largest amount falls inside the last bucket
+            double range = (double) maxAmount - minAmount + 1;
+            this.bucketWidth = range / buckets;
+            this.fineWidth = range / resolution;
+            this.counts = new long[buckets];
+            this.fineCounts = new long[resolution];
+        }
+
+        void add(long amount) {
+            count++;
+            sum += amount;
+            min = Math.min(min, amount);
+            max = Math.max(max, amount);
+            counts[index(amount, bucketWidth, counts.length)]++;
+            fineCounts[index(amount, fineWidth, fineCounts.length)]++;
+        }
+
+        private int index(long amount, double width, int length) {
+            int index = (int) ((amount - minAmount) / width);
+            return Math.max(0, Math.min(index, length - 1));
+        }
+
+        /**
+         * Smallest amount of bucket i.
+         */
+        private long from(int i, double width) {
+            return minAmount + (long) Math.ceil(i * width);
+        }
+
+        void merge(Partial other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            for (int i = 0; i < fineCounts.length; i++) {
+                fineCounts[i] += other.fineCounts[i];
+            }
+        }
+
+        /**
+         * Amount below which the given percentage of the cards fall, interpolated within the fine
+         * bucket holding that rank.
+         */
+        long percentile(int percent) {
+            long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < fineCounts.length; i++) {
+                if (seen + fineCounts[i] >= rank) {
+                    // amounts assumed evenly spread over the amounts of the bucket
+                    long from = from(i, fineWidth);
+                    long span = from(i + 1, fineWidth) - from;
+                    long value = from + (long) Math.ceil((double) span * (rank - seen) / fineCounts[i]) - 1;
+                    return Math.max(min, Math.min(max, value));
+                }
+                seen += fineCounts[i];
+            }
+            return max;
+        }
+
+        CashCardAnalyticsDTO toDTO(List<CashCardAnalyticsDTO.OwnerBalance> topOwners) {
+            if (count == 0) {
+                return new CashCardAnalyticsDTO(0, 0, null, null, List.of(), List.of(), topOwners);
+            }
+            List<CashCardAnalyticsDTO.Percentile> percentiles = new ArrayList<>(PERCENTILES.length);
+            for (int percent : PERCENTILES) {
+                percentiles.add(new CashCardAnalyticsDTO.Percentile(percent, percentile(percent)));
+            }
+            List<CashCardAnalyticsDTO.Bucket> histogram = new ArrayList<>(counts.length);
+            for (int i = 0; i < counts.length; i++) {
+                histogram.add(new CashCardAnalyticsDTO.Bucket(from(i, bucketWidth), from(i + 1, bucketWidth) - 1, counts[i]));
+            }
+            return new CashCardAnalyticsDTO(count, sum, min, max, percentiles, histogram, topOwners);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.cashcard.service;
+
+import com.example.cashcard.model.CashCard;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of cashcards keyed by (owner, id), in front of
+ * {@link CashCardService#findByIdAndOwner(Long, String)}.
+ * Entries expire after {@code cashcard.cache.ttl} and the cache holds at most
+ * {@code cashcard.cache.maximum-size} cards. Writers evict the cards they touched once their
+ * transaction has committed, hit/miss/eviction metrics are published under the "cashcard" cache name.
+ */
+@Component
+public class CashCardCache {
+
+    private record Key(String owner, Long id) {}
+
+    private final Cache<Key, CashCard> cache;
+    // bumped by every eviction, lets a reader detect that a write committed while it was loading
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CashCardCache(@Value("${cashcard.cache.maximum-size:10000}") long maximumSize,
+                         @Value("${cashcard.cache.ttl:30s}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cashcard");
+    }
+
+    /**
+     * Return the cached cashcard, or load it and cache it if it exists.
+     * @param id cashcard id
+     * @param owner principal
+     * @param loader database lookup used on a miss
+     * @return a copy of the cashcard, callers are free to modify it
+     */
+    public Optional<CashCard> get(Long id, String owner, Supplier<Optional<CashCard>> loader) {
+        Key key = new Key(owner, id);
+        CashCard cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        long evictionsBeforeLoad = evictions.get();
+        Optional<CashCard> loaded = loader.get();
+        if (loaded.isPresent()) {
+            cache.put(key, copy(loaded.get()));
+            // a writer may have committed and evicted between our read and our put
+            if (evictions.get() != evictionsBeforeLoad) {
+                cache.invalidate(key);
+            }
+        }
+        return loaded;
+    }
+
+    public void evictAfterCommit(String owner, Long id) {
+        evictAfterCommit(owner, List.of(id));
+    }
+
+    /**
+     * Evict the cashcards once the current transaction commits, or right away when there is no
+     * transaction. Nothing is evicted on rollback since the database still holds the cached values.
+     * @param owner principal
+     * @param ids ids of the cashcards written by the transaction
+     */
+    public void evictAfterCommit(String owner, Collection<Long> ids) {
+        afterCommit(() -> {
+            for (Long id : ids) {
+                cache.invalidate(new Key(owner, id));
+            }
+        });
+    }
+
+    /**
+     * Evict every cached cashcard of the owner once the current transaction commits, for writers
+     * that touch too many cards to keep their ids until the commit.
+     * @param owner principal
+     */
+    public void evictOwnerAfterCommit(String owner) {
+        afterCommit(() -> cache.asMap().keySet().removeIf(key -> key.owner().equals(owner)));
+    }
+
+    private void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(eviction);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(eviction);
+            }
+        });
+    }
+
+    private void evict(Runnable eviction) {
+        evictions.incrementAndGet();
+        eviction.run();
+    }
+
+    private static CashCard copy(CashCard cashCard) {
+        CashCard copy = new CashCard(cashCard.getId(), cashCard.getAmount(), cashCard.getOwner());
+        // the version is the ETag of the card
+        copy.setVersion(cashCard.getVersion());
+        return copy;
+    }
+}
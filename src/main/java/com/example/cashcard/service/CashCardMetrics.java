@@ -0,0 +1,67 @@
+package com.example.cashcard.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business metrics of the bulk and transfer endpoints. Request latency comes from the http.server.requests and
+ * spring.data.repository.invocations timers that Spring Boot records.
+ */
+@Component
+public class CashCardMetrics {
+
+    public static final String BULK_UPDATE = "update";
+    public static final String BULK_DELETE = "delete";
+    public static final String BULK_CREATE = "create";
+    public static final String REJECTED_EMPTY = "empty";
+    public static final String REJECTED_NOT_OWNED = "not-owned";
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary bulkUpdateSize;
+    private final DistributionSummary bulkDeleteSize;
+    private final DistributionSummary bulkCreateSize;
+    private final Counter transferConflicts;
+
+    public CashCardMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.bulkUpdateSize = batchSize(BULK_UPDATE);
+        this.bulkDeleteSize = batchSize(BULK_DELETE);
+        this.bulkCreateSize = batchSize(BULK_CREATE);
+        this.transferConflicts = Counter.builder("cashcard.transfer.conflicts")
+                .description("Transfer attempts rolled back on a lock conflict and retried")
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary batchSize(String operation) {
+        return DistributionSummary.builder("cashcard.bulk.batch.size")
+                .description("Number of cashcards in a bulk request")
+                .baseUnit("cashcards")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void recordBulkBatch(String operation, int size) {
+        DistributionSummary summary = switch (operation) {
+            case BULK_UPDATE -> bulkUpdateSize;
+            case BULK_CREATE -> bulkCreateSize;
+            default -> bulkDeleteSize;
+        };
+        summary.record(size);
+    }
+
+    public void recordBulkRejected(String operation, String reason) {
+        Counter.builder("cashcard.bulk.rejected")
+                .description("Bulk requests rejected before any cashcard was written")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordTransferConflict() {
+        transferConflicts.increment();
+    }
+}
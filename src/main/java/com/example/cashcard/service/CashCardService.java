@@ -1,32 +1,105 @@
 package com.example.cashcard.service;
 
+import com.example.cashcard.audit.AuditEvent;
+import com.example.cashcard.audit.AuditLog;
+import com.example.cashcard.dto.BulkRequestReader;
 import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardChangeDTO;
+import com.example.cashcard.dto.CashCardCursor;
 import com.example.cashcard.dto.CashCardRequestDTO;
 import com.example.cashcard.dto.CashCardResponseDTO;
+import com.example.cashcard.dto.CashCardTransferDTO;
+import com.example.cashcard.dto.OwnerSummaryDTO;
+import com.example.cashcard.error.CashCardVersionMismatchException;
+import com.example.cashcard.error.InvalidPageRequestException;
+import com.example.cashcard.error.TransferRejectedException;
 import com.example.cashcard.model.CashCard;
+import com.example.cashcard.outbox.CashCardOutbox;
+import com.example.cashcard.repository.CashCardAggregate;
 import com.example.cashcard.repository.CashCardRepository;
+import com.example.cashcard.repository.OwnerSummaryRepository;
+import com.example.cashcard.sharding.Shards;
+import com.example.cashcard.sharding.SortedMerge;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 @Service
 public class CashCardService {
 
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Order.desc("amount"), Sort.Order.asc("id"));
+    private static final Comparator<CashCard> KEYSET_ORDER = comparator(KEYSET_SORT);
+    // properties of CashCard the filter can sort and merge by
+    private static final Set<String> SORT_PROPERTIES = Set.of("id", "amount", "owner", "version");
+
     private final CashCardRepository cashCardRepository;
+    private final OwnerSummaryRepository ownerSummaryRepository;
+    private final CashCardCache cashCardCache;
+    private final CashCardMetrics cashCardMetrics;
+    private final AuditLog auditLog;
+    private final CashCardOutbox cashCardOutbox;
+    private final Shards shards;
+    private final int chunkSize;
+    private final int spillThreshold;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int transferMaxAttempts;
+    private final Duration transferBackoff;
     private static final Logger log = LoggerFactory.getLogger(CashCardService.class);
 
     @Autowired
-    public CashCardService (CashCardRepository cashCardRepository){
+    public CashCardService (CashCardRepository cashCardRepository, OwnerSummaryRepository ownerSummaryRepository,
+                            CashCardCache cashCardCache, CashCardMetrics cashCardMetrics, AuditLog auditLog,
+                            CashCardOutbox cashCardOutbox, Shards shards,
+                            @Value("${cashcard.bulk.chunk-size:1000}") int chunkSize,
+                            @Value("${cashcard.bulk.spill-threshold:1048576}") int spillThreshold,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${cashcard.transfer.max-attempts:5}") int transferMaxAttempts,
+                            @Value("${cashcard.transfer.backoff:10ms}") Duration transferBackoff){
         this.cashCardRepository = cashCardRepository;
+        this.ownerSummaryRepository = ownerSummaryRepository;
+        this.cashCardCache = cashCardCache;
+        this.cashCardMetrics = cashCardMetrics;
+        this.auditLog = auditLog;
+        this.cashCardOutbox = cashCardOutbox;
+        this.shards = shards;
+        this.chunkSize = chunkSize;
+        this.spillThreshold = spillThreshold;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.transferMaxAttempts = transferMaxAttempts;
+        this.transferBackoff = transferBackoff;
     }
 
     /**
@@ -35,8 +108,8 @@ public class CashCardService {
      * @return a Optional<CashCard>
      */
     public Optional<CashCard> findById(Long id){
-        log.info("Service findById starts.");
-        log.info("Service findById ends.");
+        log.debug("Service findById starts.");
+        log.debug("Service findById ends.");
         return cashCardRepository.findById(id);
     }
 
@@ -47,11 +120,44 @@ public class CashCardService {
      * @param owner principal
      * @return a saved cashcard object
      */
+    @Transactional
     public CashCard createCashCard(CashCardRequestDTO cashCardRequestDTO, String owner){
-        log.info("Service createCashCard starts.");
-        CashCard newCashCard = new CashCard(null, cashCardRequestDTO.getAmount(), owner);
-        log.info("Service createCashCard ends.");
-        return cashCardRepository.save(newCashCard);
+        log.debug("Service createCashCard starts.");
+        CashCard newCashCard = cashCardRepository.save(new CashCard(null, cashCardRequestDTO.getAmount(), owner));
+        long amount = newCashCard.getAmount();
+        ownerSummaryRepository.applyDelta(owner, 1, amount, amount, amount, null, null);
+        cashCardOutbox.written(CashCardChangeDTO.Type.CREATED, newCashCard);
+        audit(new AuditEvent.CashCardCreated(System.currentTimeMillis(), owner, newCashCard.getId(), newCashCard.getAmount()));
+        log.debug("Service createCashCard ends.");
+        return newCashCard;
+    }
+
+    /**
+     * Create cashcards for the owner in one transaction, all or nothing.
+     * The ids are reserved from the pooled cash_card_seq, 50 per round trip, and the rows are
+     * inserted with JDBC batches of {@code cashcard.bulk.jdbc-batch-size}, each followed by one
+     * batch of outbox events. The owner summary is moved once for the whole list.
+     * @param cashCardRequestDTOS amounts of the new cashcards
+     * @param owner principal
+     * @return ids of the new cashcards, in the order of the requests
+     */
+    @Transactional
+    public List<Long> createCashCards(List<CashCardRequestDTO> cashCardRequestDTOS, String owner){
+        log.debug("BATCH create starts");
+        cashCardMetrics.recordBulkBatch(CashCardMetrics.BULK_CREATE, cashCardRequestDTOS.size());
+        List<CashCard> cashCards = new ArrayList<>(cashCardRequestDTOS.size());
+        List<Long> amounts = new ArrayList<>(cashCardRequestDTOS.size());
+        for (CashCardRequestDTO dto : cashCardRequestDTOS) {
+            cashCards.add(new CashCard(null, dto.getAmount(), owner));
+            amounts.add(dto.getAmount());
+        }
+        cashCardRepository.insertAll(cashCards,
+                written -> cashCardOutbox.written(CashCardChangeDTO.Type.CREATED, written));
+        Totals added = Totals.of(amounts);
+        ownerSummaryRepository.applyDelta(owner, added.cards(), added.total(), added.low(), added.high(), null, null);
+        audit(new AuditEvent.CashCardsBatchCreated(System.currentTimeMillis(), owner, cashCards.size()));
+        log.debug("BATCH create ends");
+        return cashCards.stream().map(CashCard::getId).toList();
     }
 
     /**
@@ -59,22 +165,24 @@ public class CashCardService {
      * @param pageable page setting in the url
      * @return a page of cashcards
      */
+    @Transactional(readOnly = true)
     public Page<CashCard> findAll(Pageable pageable){
-        log.info("Service findAll starts.");
-        log.info("Service findAll ends.");
+        log.debug("Service findAll starts.");
+        log.debug("Service findAll ends.");
         return cashCardRepository.findAll(pageable);
     }
 
     /**
-     * This service retrieve cashcard by owner and id.
+     * This service retrieve cashcard by owner and id, read through the {@link CashCardCache}.
      * @param id cashcard's id
      * @param owner principal
      * @return Optional <cashcard>
      */
+    @Transactional(readOnly = true)
     public Optional<CashCard> findByIdAndOwner(Long id, String owner){
-        log.info("Service findByIdAndOwner starts.");
-        Optional<CashCard> cashCard = cashCardRepository.findByIdAndOwner(id,owner);
-        log.info("Service findByIdAndOwner ends.");
+        log.debug("Service findByIdAndOwner starts.");
+        Optional<CashCard> cashCard = cashCardCache.get(id, owner, () -> cashCardRepository.findByIdAndOwner(id, owner));
+        log.debug("Service findByIdAndOwner ends.");
         return cashCard;
     }
 
@@ -84,57 +192,167 @@ public class CashCardService {
      * @param owner authenticated user
      * @return A page of cashcash that follow the specific page setting from the user.
      */
+    @Transactional(readOnly = true)
     public Page<CashCard> findByOwner(Pageable pageable,String owner){
-        log.info("Service findByOwner starts.");
-        log.info("Service findByOwner ends.");
+        log.debug("Service findByOwner starts.");
+        log.debug("Service findByOwner ends.");
         return cashCardRepository.findByOwner(owner, PageRequest
                 .of(pageable.getPageNumber(), pageable.getPageSize(),
                         pageable.getSortOr(Sort.by(Sort.Direction.DESC,"amount"))));
     }
 
+    /**
+     * This service find a window of cash cards by owner with keyset pagination. The cards are sorted
+     * by amount descending then id, and the next window starts right after the given cursor, so
+     * no offset is skipped and no count query is run.
+     * @param owner authenticated user
+     * @param after cursor of the last card of the previous window, null for the first window
+     * @param size maximum number of cards in the window
+     * @return a window of cashcards
+     */
+    @Transactional(readOnly = true)
+    public Window<CashCard> scrollByOwner(String owner, CashCardCursor after, int size){
+        log.debug("Service scrollByOwner starts.");
+        Window<CashCard> window = cashCardRepository.findByOwner(owner, keysetPosition(after), KEYSET_SORT, Limit.of(size));
+        log.debug("Service scrollByOwner ends.");
+        return window;
+    }
+
+    /**
+     * This service streams every cash card of the owner, ordered by id, to the consumer. The rows
+     * are read with a JDBC fetch size and never collected, it must be called from the thread that
+     * consumes them since the stream is closed when the transaction ends.
+     * @param owner authenticated user
+     * @param consumer receives the cards one by one
+     */
+    @Transactional(readOnly = true)
+    public void exportByOwner(String owner, Consumer<CashCardResponseDTO> consumer){
+        log.debug("Service exportByOwner starts.");
+        try (Stream<CashCardResponseDTO> cashCards = cashCardRepository.streamByOwner(owner)) {
+            cashCards.forEach(consumer);
+        }
+        log.debug("Service exportByOwner ends.");
+    }
+
     /**
      * Update cash card service, this service only update the cash card, it does not
      * create a new cash card.
-     * This method looks up whether the updating cash card exists
+     * This method looks up whether the updating cash card exists. The UPDATE is guarded by the
+     * version column, so a concurrent update of the same card fails instead of being overwritten.
       * @param id cash card id
      * @param cashCardRequestDTO requested http body
      * @param logInAs principal
-     * @return false if the cash card does not exist
-     *         true if the update is success
+     * @param expectedVersions versions the client accepts to overwrite (If-Match), null for any
+     * @return empty if the cash card does not exist
+     *         the updated cash card with its new version if the update is success
+     * @throws CashCardVersionMismatchException if the current version is not an expected one
      */
-    public boolean updateCashCard(Long id, CashCardRequestDTO cashCardRequestDTO, String logInAs){
-        log.info("Service updateCashCard starts.");
-        Optional<CashCard> cashCard = findByIdAndOwner(id, logInAs);
+    @Transactional
+    public Optional<CashCard> updateCashCard(Long id, CashCardRequestDTO cashCardRequestDTO, String logInAs,
+                                             Collection<Long> expectedVersions){
+        log.debug("Service updateCashCard starts.");
+        Optional<CashCard> cashCard = cashCardRepository.findByIdAndOwner(id, logInAs);
         if (!cashCard.isPresent()){
-            log.info("Service updateCashCard ends with cashcard not found.");
-            return false;
+            log.debug("Service updateCashCard ends with cashcard not found.");
+            return Optional.empty();
         }
-        CashCard cashCardUpdated = new CashCard(cashCard.get().getId(), cashCardRequestDTO.getAmount(), logInAs);
-        cashCardRepository.save(cashCardUpdated);
-        log.info("Service updateCashCard ends correctly.");
-        return true;
+        CashCard cashCardUpdated = cashCard.get();
+        if (expectedVersions != null && !expectedVersions.contains(cashCardUpdated.getVersion())) {
+            log.debug("Service updateCashCard ends with version mismatch.");
+            throw new CashCardVersionMismatchException("Cashcard " + id + " has been modified");
+        }
+        long oldAmount = cashCardUpdated.getAmount();
+        cashCardUpdated.setAmount(cashCardRequestDTO.getAmount());
+        // UPDATE ... WHERE version = ?, bumps the version returned to the caller
+        cashCardRepository.flush();
+        long newAmount = cashCardUpdated.getAmount();
+        ownerSummaryRepository.applyDelta(logInAs, 0, newAmount - oldAmount, newAmount, newAmount, oldAmount, oldAmount);
+        cashCardOutbox.written(CashCardChangeDTO.Type.UPDATED, cashCardUpdated);
+        cashCardCache.evictAfterCommit(logInAs, id);
+        audit(new AuditEvent.CashCardUpdated(System.currentTimeMillis(), logInAs, id, cashCardUpdated.getAmount()));
+        log.debug("Service updateCashCard ends correctly.");
+        return Optional.of(cashCardUpdated);
     }
 
 
     /**
      * Bulk update cash cards. if not exist or not owned, the endpoint does not update anything and
-     * throw exception
+     * throw exception.
+     * Ownership is checked with one count query per chunk of ids, then the amounts are written
+     * with JDBC batches, so the number of round trips does not grow with the number of cards.
      * @param cashCardBulkUpdateDTOS
      * @param owner
      */
+    @Transactional
     public void bulkUpdate(List<CashCardBulkUpdateDTO> cashCardBulkUpdateDTOS, String owner){
-        log.info("BULK update starts");
-        List<CashCard> cashCards = new ArrayList<>();
-            for (CashCardBulkUpdateDTO dto : cashCardBulkUpdateDTOS) {
-                Optional<CashCard> cashcardOptional = cashCardRepository.findByIdAndOwner(dto.getId(), owner);
-                if (cashcardOptional.isPresent()) {
-                    cashCards.add(new CashCard(cashcardOptional.get().getId(), dto.getAmount(), owner));
-                } else {
-                    throw new IllegalArgumentException("One or more cashcards do not exist or not owned.");
-                }
+        log.debug("BULK update starts");
+        cashCardMetrics.recordBulkBatch(CashCardMetrics.BULK_UPDATE, cashCardBulkUpdateDTOS.size());
+        // the last amount of a repeated id wins
+        Map<Long, Long> amounts = new LinkedHashMap<>();
+        for (CashCardBulkUpdateDTO dto : cashCardBulkUpdateDTOS) {
+            amounts.put(dto.getId(), dto.getAmount());
+        }
+        applyUpdates(amounts, owner);
+        Set<Long> ids = amounts.keySet();
+        cashCardCache.evictAfterCommit(owner, ids);
+        audit(new AuditEvent.CashCardsBulkUpdated(System.currentTimeMillis(), owner, ids.size()));
+        log.debug("BULK update ends");
+    }
+
+    /**
+     * Bulk update cash cards read from a streamed request body, all or nothing like
+     * {@link #bulkUpdate(List, String)}. The body is consumed in chunks of
+     * {@code cashcard.bulk.chunk-size} updates held in primitive buffers, each chunk is checked and
+     * written before the next one is read, and a card that is not owned rolls back the chunks
+     * already written. The memory used does not depend on the size of the body.
+     * @param reader bulk update body
+     * @param owner
+     * @return number of updates read, 0 if the body is an empty array
+     */
+    @Transactional
+    public int bulkUpdate(BulkRequestReader reader, String owner){
+        log.debug("BULK update starts");
+        long[] ids = new long[chunkSize];
+        long[] amounts = new long[chunkSize];
+        Map<Long, Long> chunk = new LinkedHashMap<>();
+        int total = 0;
+        for (int count; (count = reader.readUpdates(ids, amounts)) > 0; total += count) {
+            chunk.clear();
+            for (int i = 0; i < count; i++) {
+                chunk.put(ids[i], amounts[i]);
             }
-        cashCardRepository.saveAll(cashCards);
-        log.info("BULK update ends");
+            applyUpdates(chunk, owner);
+        }
+        if (total > 0) {
+            cashCardMetrics.recordBulkBatch(CashCardMetrics.BULK_UPDATE, total);
+            cashCardCache.evictOwnerAfterCommit(owner);
+            audit(new AuditEvent.CashCardsBulkUpdated(System.currentTimeMillis(), owner, total));
+        }
+        log.debug("BULK update ends after {} updates", total);
+        return total;
+    }
+
+    /**
+     * Check the ownership of the cards and write their new amounts with JDBC batches, then move
+     * the owner summary.
+     * @param amounts new amount by id
+     * @param owner
+     */
+    private void applyUpdates(Map<Long, Long> amounts, String owner) {
+        Totals before = ownedTotals(new ArrayList<>(amounts.keySet()), owner);
+        if (before == null) {
+            cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_UPDATE, CashCardMetrics.REJECTED_NOT_OWNED);
+            throw new IllegalArgumentException("One or more cashcards do not exist or not owned.");
+        }
+        List<CashCard> cashCards = new ArrayList<>(amounts.size());
+        amounts.forEach((id, amount) -> cashCards.add(new CashCard(id, amount, owner)));
+        cashCardRepository.batchUpdateAmount(cashCards);
+        for (List<Long> chunk : chunks(new ArrayList<>(amounts.keySet()))) {
+            cashCardOutbox.updated(owner, chunk);
+        }
+        Totals after = Totals.of(amounts.values());
+        ownerSummaryRepository.applyDelta(owner, 0, after.total() - before.total(), after.low(), after.high(),
+                before.low(), before.high());
     }
 
     /**
@@ -145,45 +363,394 @@ public class CashCardService {
      * @return false if the cashcard does not exist or ownership is wrong
      *         true if deleted.
      */
+    @Transactional
     public boolean deleteCashCard(Long id, String logInAs){
-        log.info("Service deleteCashCard starts.");
+        log.debug("Service deleteCashCard starts.");
 
-        boolean exist = cashCardRepository.existsByIdAndOwner(id, logInAs);
-        if (exist) {
+        Optional<CashCard> cashCard = cashCardRepository.findByIdAndOwner(id, logInAs);
+        if (cashCard.isPresent()) {
+            long amount = cashCard.get().getAmount();
             cashCardRepository.deleteById(id);
-            log.info("Service deletCashCard ends successfully.");
+            // DELETE now, the event is recorded under the row lock
+            cashCardRepository.flush();
+            cashCardOutbox.deleted(logInAs, List.of(id));
+            ownerSummaryRepository.applyDelta(logInAs, -1, -amount, null, null, amount, amount);
+            cashCardCache.evictAfterCommit(logInAs, id);
+            audit(new AuditEvent.CashCardDeleted(System.currentTimeMillis(), logInAs, id));
+            log.debug("Service deletCashCard ends successfully.");
             return true;
         }
-        log.info("Service updateCashCard ends with not found.");
+        log.debug("Service updateCashCard ends with not found.");
         return false;
     }
 
     /**
-     * Delete cash cards based on the ids, catch the exception when user does not own a card in
-     * the list
+     * Delete cash cards based on the ids, nothing is deleted when user does not own a card in
+     * the list.
+     * The ids are split into chunks of {@code cashcard.bulk.chunk-size} to keep the IN-lists under
+     * driver limits. Every chunk is checked with one count query before the first delete runs, then
+     * each chunk is removed with a single DELETE statement, all in one transaction.
      * @param ids ids to be deleted
      * @param owner
      *
      */
+    @Transactional
     public void bulkDeleteCashCard (List<Long> ids, String owner){
-        for(Long id : ids){
-            boolean exist = cashCardRepository.existsByIdAndOwner(id,owner);
-            if(!exist){
-                throw new IllegalArgumentException("One or more cashcards are not owed or not found");
+        log.debug("BULK delete starts");
+        cashCardMetrics.recordBulkBatch(CashCardMetrics.BULK_DELETE, ids.size());
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Totals removed = ownedTotals(distinctIds, owner);
+        if (removed == null) {
+            cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_DELETE, CashCardMetrics.REJECTED_NOT_OWNED);
+            throw new IllegalArgumentException("One or more cashcards are not owed or not found");
+        }
+        for (List<Long> chunk : chunks(distinctIds)) {
+            cashCardRepository.deleteByIdInAndOwner(chunk, owner);
+            cashCardOutbox.deleted(owner, chunk);
+        }
+        ownerSummaryRepository.applyDelta(owner, -removed.cards(), -removed.total(), null, null,
+                removed.low(), removed.high());
+        cashCardCache.evictAfterCommit(owner, distinctIds);
+        audit(new AuditEvent.CashCardsBulkDeleted(System.currentTimeMillis(), owner, distinctIds.size()));
+        log.debug("BULK delete ends");
+    }
+
+    /**
+     * Delete cash cards whose ids are read from a streamed request body, all or nothing like
+     * {@link #bulkDeleteCashCard(List, String)}. The ids are consumed in chunks of
+     * {@code cashcard.bulk.chunk-size} held in a primitive buffer, each chunk is checked and deleted
+     * before the next one is read, and a card that is not owned rolls back the chunks already
+     * deleted. The ids deleted so far are kept in a {@link SpillingIdSet} that moves to a temporary
+     * file past {@code cashcard.bulk.spill-threshold} ids: an id repeated in a later chunk is found
+     * there and skipped, so the chunk size does not change the outcome, while a card deleted by
+     * another request is still not found, wherever it is in the body.
+     * @param reader bulk delete body
+     * @param owner
+     * @return number of ids read, 0 if the body is an empty array
+     */
+    @Transactional
+    public int bulkDeleteCashCard(BulkRequestReader reader, String owner){
+        log.debug("BULK delete starts");
+        long[] ids = new long[chunkSize];
+        Set<Long> chunk = new LinkedHashSet<>();
+        int total = 0;
+        try (SpillingIdSet deleted = new SpillingIdSet(spillThreshold)) {
+            for (int count; (count = reader.readIds(ids)) > 0; total += count) {
+                chunk.clear();
+                for (int i = 0; i < count; i++) {
+                    chunk.add(ids[i]);
+                }
+                List<Long> distinctIds = new ArrayList<>(chunk);
+                Totals removed = ownedTotals(distinctIds, owner);
+                if (removed == null && !deleted.isEmpty()) {
+                    // only a missing card can be a repeat of an earlier chunk, look them up then
+                    distinctIds.removeIf(deleted::contains);
+                    removed = ownedTotals(distinctIds, owner);
+                }
+                if (removed == null) {
+                    cashCardMetrics.recordBulkRejected(CashCardMetrics.BULK_DELETE, CashCardMetrics.REJECTED_NOT_OWNED);
+                    throw new IllegalArgumentException("One or more cashcards are not owed or not found");
+                }
+                if (distinctIds.isEmpty()) {
+                    continue;
+                }
+                cashCardRepository.deleteByIdInAndOwner(distinctIds, owner);
+                cashCardOutbox.deleted(owner, distinctIds);
+                ownerSummaryRepository.applyDelta(owner, -removed.cards(), -removed.total(), null, null,
+                        removed.low(), removed.high());
+                deleted.addAll(distinctIds);
             }
         }
-        cashCardRepository.deleteAllById(ids);
+        if (total > 0) {
+            cashCardMetrics.recordBulkBatch(CashCardMetrics.BULK_DELETE, total);
+            cashCardCache.evictOwnerAfterCommit(owner);
+            audit(new AuditEvent.CashCardsBulkDeleted(System.currentTimeMillis(), owner, total));
+        }
+        log.debug("BULK delete ends after {} ids", total);
+        return total;
     }
 
-    public List<CashCardResponseDTO> findByAmountRange(Double min, Double max, Pageable pageable){
-        log.info("findByAmountRange starts");
-        List<CashCard> cashCardsList = cashCardRepository.findByAmountRange(min,max,PageRequest
-                .of(pageable.getPageNumber(), pageable.getPageSize(),
-                        pageable.getSortOr(Sort.by(Sort.Direction.DESC,"amount"))));
+    /**
+     * Move an amount from one of the owner's cash cards to another, both cards change in one
+     * transaction or not at all.
+     * The two rows are locked with SELECT ... FOR UPDATE in ascending id order, so two transfers
+     * over the same pair of cards always queue on the same row first and cannot deadlock. A lock
+     * timeout rolls the attempt back and it is retried after an exponential backoff with jitter,
+     * up to {@code cashcard.transfer.max-attempts} times.
+     * @param cashCardTransferDTO source, target and amount of the transfer
+     * @param owner principal
+     * @return the source and the target cash card after the transfer
+     * @throws TransferRejectedException if the cards are the same or an amount would leave its range
+     * @throws IllegalArgumentException if a card does not exist or is not owned
+     * @throws ConcurrencyFailureException if every attempt hit a lock conflict
+     */
+    public List<CashCard> transfer(CashCardTransferDTO cashCardTransferDTO, String owner){
+        log.debug("Service transfer starts.");
+        if (cashCardTransferDTO.getFromId().equals(cashCardTransferDTO.getToId())) {
+            throw new TransferRejectedException("Cannot transfer to the same cashcard");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<CashCard> cashCards = transactionTemplate.execute(status -> transferOnce(cashCardTransferDTO, owner));
+                log.debug("Service transfer ends.");
+                return cashCards;
+            } catch (ConcurrencyFailureException e) {
+                cashCardMetrics.recordTransferConflict();
+                if (attempt >= transferMaxAttempts) {
+                    log.debug("Service transfer gives up after {} attempts.", attempt);
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private List<CashCard> transferOnce(CashCardTransferDTO cashCardTransferDTO, String owner) {
+        Long fromId = cashCardTransferDTO.getFromId();
+        Long toId = cashCardTransferDTO.getToId();
+        long amount = cashCardTransferDTO.getAmount();
+        CashCard first = lockOwned(Math.min(fromId, toId), owner);
+        CashCard second = lockOwned(Math.max(fromId, toId), owner);
+        CashCard from = first.getId().equals(fromId) ? first : second;
+        CashCard to = from == first ? second : first;
+
+        long oldFrom = from.getAmount();
+        long oldTo = to.getAmount();
+        long newFrom = oldFrom - amount;
+        if (newFrom <= 0) {
+            throw new TransferRejectedException("Insufficient amount on cashcard " + fromId);
+        }
+        long newTo;
+        try {
+            newTo = Math.addExact(oldTo, amount);
+        } catch (ArithmeticException e) {
+            throw new TransferRejectedException("Amount of cashcard " + toId + " would overflow");
+        }
+        from.setAmount(newFrom);
+        to.setAmount(newTo);
+        // write the new amounts and versions before recording them
+        cashCardRepository.flush();
+        cashCardOutbox.written(CashCardChangeDTO.Type.UPDATED, from);
+        cashCardOutbox.written(CashCardChangeDTO.Type.UPDATED, to);
+        // the owner's total does not move, only the min and max may
+        ownerSummaryRepository.applyDelta(owner, 0, 0, Math.min(newFrom, newTo), Math.max(newFrom, newTo),
+                Math.min(oldFrom, oldTo), Math.max(oldFrom, oldTo));
+        cashCardCache.evictAfterCommit(owner, List.of(fromId, toId));
+        audit(new AuditEvent.CashCardsTransferred(System.currentTimeMillis(), owner, fromId, toId, amount));
+        return List.of(from, to);
+    }
+
+    private CashCard lockOwned(Long id, String owner) {
+        return cashCardRepository.findByIdAndOwnerForUpdate(id, owner)
+                .orElseThrow(() -> new IllegalArgumentException("Cashcard " + id + " does not exist or not owned"));
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = transferBackoff.toMillis() << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Transfer interrupted while backing off", e);
+        }
+    }
+
+    /**
+     * This service checks that every card exists and belongs to the owner, without changing anything.
+     * @param distinctIds ids without duplicates
+     * @param owner principal
+     * @return true if the owner owns every card
+     */
+    @Transactional(readOnly = true)
+    public boolean ownsAll(List<Long> distinctIds, String owner) {
+        return ownedTotals(distinctIds, owner) != null;
+    }
+
+    /**
+     * Check that every id exists and belongs to the owner, one aggregate query per chunk. The same
+     * query returns the current totals of the cards, which the owner summary needs.
+     * @param distinctIds ids without duplicates
+     * @param owner
+     * @return count, sum, min and max of the current amounts, or null if a card is not owned
+     */
+    private Totals ownedTotals(List<Long> distinctIds, String owner) {
+        Totals totals = Totals.EMPTY;
+        for (List<Long> chunk : chunks(distinctIds)) {
+            CashCardAggregate aggregate = cashCardRepository.aggregateByIdInAndOwner(chunk, owner);
+            if (aggregate.getCards() != chunk.size()) {
+                return null;
+            }
+            totals = totals.plus(new Totals(aggregate.getCards(), aggregate.getTotal(), aggregate.getLow(), aggregate.getHigh()));
+        }
+        return totals;
+    }
+
+    private record Totals(long cards, long total, Long low, Long high) {
+
+        static final Totals EMPTY = new Totals(0, 0, null, null);
+
+        static Totals of(Iterable<Long> amounts) {
+            Totals totals = EMPTY;
+            for (Long amount : amounts) {
+                totals = totals.plus(new Totals(1, amount, amount, amount));
+            }
+            return totals;
+        }
+
+        Totals plus(Totals other) {
+            return new Totals(cards + other.cards, total + other.total,
+                    low == null || (other.low != null && other.low < low) ? other.low : low,
+                    high == null || (other.high != null && other.high > high) ? other.high : high);
+        }
+    }
+
+    /**
+     * Queue the audit event once the current transaction has committed, a rolled back change is
+     * not audited.
+     */
+    private void audit(AuditEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            auditLog.publish(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                auditLog.publish(event);
+            }
+        });
+    }
+
+    private <T> List<List<T>> chunks(List<T> list) {
+        List<List<T>> chunks = new ArrayList<>((list.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < list.size(); from += chunkSize) {
+            chunks.add(list.subList(from, Math.min(from + chunkSize, list.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * This service find a page of cash cards of every owner with an amount between min and max.
+     * With sharding, every shard returns its first (page + 1) * size cards in the requested order,
+     * by id last, and the page is cut from their k-way merge: deep pages cost more and more, the
+     * keyset pagination of {@link #scrollByAmountRange} does not.
+     * @param min lower bound of the amount, inclusive
+     * @param max upper bound of the amount, inclusive
+     * @param pageable page and sort, amount descending by default
+     * @return the cards of the page
+     * @throws InvalidPageRequestException if the sort is not on a CashCard property, or the page
+     *         ends beyond Integer.MAX_VALUE cards
+     */
+    @Transactional(readOnly = true)
+    public List<CashCardResponseDTO> findByAmountRange(long min, long max, Pageable pageable){
+        log.debug("findByAmountRange starts");
+        Sort sort = pageable.getSortOr(Sort.by(Sort.Direction.DESC,"amount"));
+        if (sort.getOrderFor("id") == null) {
+            sort = sort.and(Sort.by("id"));
+        }
+        for (Sort.Order order : sort) {
+            if (!SORT_PROPERTIES.contains(order.getProperty())) {
+                throw new InvalidPageRequestException("Cannot sort cashcards by " + order.getProperty());
+            }
+        }
+        if (((long) pageable.getPageNumber() + 1) * pageable.getPageSize() > Integer.MAX_VALUE) {
+            throw new InvalidPageRequestException("Page " + pageable.getPageNumber() + " is out of range");
+        }
+        List<CashCard> cashCardsList;
+        if (shards.count() == 1) {
+            cashCardsList = cashCardRepository.findByAmountRange(min, max,
+                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort));
+        } else {
+            PageRequest firstPages = PageRequest.of(0,
+                    Math.toIntExact(((long) pageable.getPageNumber() + 1) * pageable.getPageSize()), sort);
+            cashCardsList = SortedMerge.merge(
+                    onEachShardReadOnly(shard -> cashCardRepository.findByAmountRange(min, max, firstPages)),
+                    comparator(sort), Math.toIntExact(pageable.getOffset()), pageable.getPageSize());
+        }
         List<CashCardResponseDTO> cashCardsResponseDTOS = cashCardsList.stream()
                 .map(card -> new CashCardResponseDTO(card.getId(), card.getAmount())).toList();
-        log.info("findByAmountRange ends");
+        log.debug("findByAmountRange ends");
         return cashCardsResponseDTOS;
     }
 
+    /**
+     * This service returns the count, sum, min and max of the owner's cash card amounts. They are
+     * read from the owner_summary row that every change of the owner's cards keeps up to date, so
+     * the cost does not depend on how many cards the owner has.
+     * @param owner authenticated user
+     * @return the summary, a count of 0 with no min and max if the owner has no cards
+     */
+    @Transactional(readOnly = true)
+    public OwnerSummaryDTO summarize(String owner){
+        log.debug("Service summarize starts.");
+        OwnerSummaryDTO summary = ownerSummaryRepository.findById(owner)
+                .map(row -> new OwnerSummaryDTO(row.getCardCount(), row.getTotalAmount(), row.getMinAmount(), row.getMaxAmount()))
+                .orElseGet(() -> new OwnerSummaryDTO(0, 0, null, null));
+        log.debug("Service summarize ends.");
+        return summary;
+    }
+
+    /**
+     * This service find a window of cash cards with an amount between min and max with keyset
+     * pagination, sorted by amount descending then id like {@link #scrollByOwner}. The range and
+     * the cursor are both served by the (amount, id) index, so a window costs the same on any page.
+     * @param min lower bound of the amount, inclusive
+     * @param max upper bound of the amount, inclusive
+     * @param after cursor of the last card of the previous window, null for the first window
+     * @param size maximum number of cards in the window
+     * @return a window of cashcards
+     */
+    @Transactional(readOnly = true)
+    public Window<CashCard> scrollByAmountRange(long min, long max, CashCardCursor after, int size){
+        log.debug("Service scrollByAmountRange starts.");
+        // every shard continues after the same cursor, the first size cards of their merge come next
+        List<Window<CashCard>> windows = onEachShardReadOnly(shard ->
+                cashCardRepository.findByAmountBetween(min, max, keysetPosition(after), KEYSET_SORT, Limit.of(size)));
+        if (windows.size() == 1) {
+            log.debug("Service scrollByAmountRange ends.");
+            return windows.get(0);
+        }
+        List<CashCard> merged = SortedMerge.merge(windows.stream().map(Window::getContent).toList(), KEYSET_ORDER, 0, size + 1);
+        boolean hasNext = merged.size() > size || windows.stream().anyMatch(Window::hasNext);
+        List<CashCard> cashCards = merged.subList(0, Math.min(size, merged.size()));
+        log.debug("Service scrollByAmountRange ends.");
+        return Window.from(cashCards, index -> keysetPosition(cursorOf(cashCards.get(index))), hasNext);
+    }
+
+    /**
+     * Gather a read of every shard, each in a read-only transaction of its own shard, so that it can
+     * be served by a replica. With one shard it joins the transaction of the caller.
+     */
+    private <T> List<T> onEachShardReadOnly(IntFunction<T> read) {
+        return shards.onEachShard(shard -> readOnlyTransaction.execute(status -> read.apply(shard)));
+    }
+
+    private static CashCardCursor cursorOf(CashCard cashCard) {
+        return new CashCardCursor(cashCard.getAmount(), cashCard.getId());
+    }
+
+    /**
+     * Order of the cards for a sort of the repository, to merge the results of the shards.
+     */
+    private static Comparator<CashCard> comparator(Sort sort) {
+        Comparator<CashCard> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<CashCard> property = switch (order.getProperty()) {
+                case "id" -> Comparator.comparing(CashCard::getId);
+                case "amount" -> Comparator.comparingLong(CashCard::getAmount);
+                case "owner" -> Comparator.comparing(CashCard::getOwner);
+                case "version" -> Comparator.comparingLong(CashCard::getVersion);
+                default -> throw new IllegalStateException("Cannot merge cashcards sorted by " + order.getProperty());
+            };
+            comparator = comparator.thenComparing(order.isDescending() ? property.reversed() : property);
+        }
+        return comparator;
+    }
+
+    private static ScrollPosition keysetPosition(CashCardCursor after) {
+        return after == null
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(Map.of("amount", after.getAmount(), "id", after.getId()));
+    }
+
 }
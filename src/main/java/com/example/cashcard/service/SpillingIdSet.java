@@ -0,0 +1,156 @@
+package com.example.cashcard.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The ids a bulk request has already processed, as primitive longs. Up to {@code memoryLimit} ids
+ * are held in an array that is sorted when it is searched; once it is full it is written as a
+ * sorted run to a temporary file, deleted on {@link #close()}, and later lookups binary search the
+ * runs with positional reads. Lookups are expected to be rare, adding ids never reads the file.
+ * Not thread safe, a set belongs to the request or job that fills it.
+ */
+final class SpillingIdSet implements AutoCloseable {
+
+    private record Run(long offset, int size) {
+    }
+
+    private final int memoryLimit;
+    private long[] ids = new long[16];
+    private int size;
+    private boolean sorted = true;
+    private final List<Run> runs = new ArrayList<>();
+    private final ByteBuffer slot = ByteBuffer.allocate(Long.BYTES);
+    private Path file;
+    private FileChannel channel;
+    private long fileSize;
+
+    SpillingIdSet(int memoryLimit) {
+        if (memoryLimit < 1) {
+            throw new IllegalArgumentException("memoryLimit must be positive");
+        }
+        this.memoryLimit = memoryLimit;
+    }
+
+    void addAll(Collection<Long> added) {
+        for (Long id : added) {
+            add(id);
+        }
+    }
+
+    void add(long id) {
+        if (size == memoryLimit) {
+            spill();
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.min(memoryLimit, ids.length * 2));
+        }
+        if (size > 0 && ids[size - 1] > id) {
+            sorted = false;
+        }
+        ids[size++] = id;
+    }
+
+    boolean isEmpty() {
+        return size == 0 && runs.isEmpty();
+    }
+
+    boolean contains(long id) {
+        if (!sorted) {
+            Arrays.sort(ids, 0, size);
+            sorted = true;
+        }
+        if (Arrays.binarySearch(ids, 0, size, id) >= 0) {
+            return true;
+        }
+        for (Run run : runs) {
+            if (inRun(run, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean inRun(Run run, long id) {
+        int low = 0;
+        int high = run.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = read(run.offset() + (long) middle * Long.BYTES);
+            if (value < id) {
+                low = middle + 1;
+            } else if (value > id) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long read(long position) {
+        try {
+            slot.clear();
+            while (slot.hasRemaining()) {
+                if (channel.read(slot, position + slot.position()) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+            return slot.getLong(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void spill() {
+        Arrays.sort(ids, 0, size);
+        try {
+            if (channel == null) {
+                file = Files.createTempFile("cashcard-ids-", ".bin");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long position = fileSize;
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(ids[i]);
+                if (!buffer.hasRemaining() || i == size - 1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    buffer.clear();
+                }
+            }
+            runs.add(new Run(fileSize, size));
+            fileSize = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        size = 0;
+        sorted = true;
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            channel = null;
+        }
+    }
+}
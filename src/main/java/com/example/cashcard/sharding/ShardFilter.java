@@ -0,0 +1,41 @@
+package com.example.cashcard.sharding;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Binds an authenticated request to the shard of its principal, every owner-scoped call of the
+ * request then reads and writes that shard only. It runs after the security filter chain, which
+ * has set the principal. Async work started by the request (bulk jobs, exports) is bound to the
+ * same shard by the task decorator of the application executor.
+ */
+public class ShardFilter extends OncePerRequestFilter {
+
+    private final Shards shards;
+
+    public ShardFilter(Shards shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Principal principal = request.getUserPrincipal();
+        if (principal == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Integer previous = Shards.bind(shards.shardOf(principal.getName()));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Shards.restore(previous);
+        }
+    }
+}
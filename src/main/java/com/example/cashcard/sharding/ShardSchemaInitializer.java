@@ -0,0 +1,70 @@
+package com.example.cashcard.sharding;
+
+import com.example.cashcard.datasource.SchemaIfMissingInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Runs the schema scripts of {@code spring.sql.init} on every shard without the schema, in place
+ * of the initializer of Spring Boot which would only see shard 0 through the routing DataSource.
+ * The data scripts are not run: their rows would be copied on every shard instead of the shard of
+ * their owner.
+ * <p>
+ * Each shard then draws its cash_card ids from its own range of {@link #IDS_PER_SHARD} ids, so
+ * ids stay unique across the shards and the merged results of the admin queries have no ties on
+ * id.
+ */
+public class ShardSchemaInitializer extends SchemaIfMissingInitializer {
+
+    static final long IDS_PER_SHARD = 1L << 40;
+
+    private static final String SEQUENCE_SQL = "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+            + "WHERE SEQUENCE_NAME = 'CASH_CARD_SEQ'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private static final Logger log = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+    public ShardSchemaInitializer(DataSource dataSource, DatabaseInitializationSettings settings, Shards shards) {
+        super(dataSource, schemaOnly(settings));
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.shards = shards;
+    }
+
+    private static DatabaseInitializationSettings schemaOnly(DatabaseInitializationSettings settings) {
+        settings.setDataLocations(List.of());
+        return settings;
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        boolean initialized = false;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            int current = shard;
+            initialized |= Shards.onShard(current, () -> {
+                boolean ran = super.initializeDatabase();
+                reserveIds(current);
+                return ran;
+            });
+        }
+        return initialized;
+    }
+
+    /**
+     * Move the sequence of the shard to the start of its id range, unless it is already there.
+     */
+    private void reserveIds(int shard) {
+        // pooled optimizer: the value read from the sequence is the last id of a block of 50
+        long first = shard * IDS_PER_SHARD + 50;
+        Long base = jdbcTemplate.query(SEQUENCE_SQL, rs -> rs.next() ? rs.getLong(1) : null);
+        if (base != null && base < first) {
+            jdbcTemplate.execute("ALTER SEQUENCE cash_card_seq RESTART WITH " + first);
+            log.debug("cash_card ids of shard {} start at {}", shard, first - 49);
+        }
+    }
+}
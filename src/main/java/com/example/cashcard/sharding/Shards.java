@@ -0,0 +1,211 @@
+package com.example.cashcard.sharding;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * The shards holding the cash_card rows, and the shard the current thread works on.
+ * <p>
+ * Every row of an owner (cards, owner summary, outbox events, idempotency keys) lives on the shard
+ * of the owner, picked by consistent hashing: each shard is placed {@code cashcard.sharding.virtual-nodes}
+ * times on a ring of 64-bit hashes and an owner belongs to the first shard found clockwise from the
+ * hash of its name. Adding a shard only moves the owners that land on its points, about 1 / (N + 1)
+ * of them, instead of nearly all of them with a hash modulo N.
+ * <p>
+ * {@link ShardRoutingDataSource} sends the statements of a thread to the shard it is bound to,
+ * shard 0 when none is bound. Requests are bound to the shard of their principal by
+ * {@link ShardFilter}, background work binds itself with {@link #forEachShard} and admin queries
+ * over every card gather the result of each shard with {@link #onEachShard}. Without
+ * {@code cashcard.sharding.urls} there is one shard and everything runs on the calling thread.
+ */
+@Component
+public class Shards implements DisposableBean {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final ExecutorService executor;
+
+    @Autowired
+    public Shards(@Value("${cashcard.sharding.urls:}") List<String> urls,
+                  @Value("${cashcard.sharding.virtual-nodes:128}") int virtualNodes) {
+        this.count = Math.max(1, urls.size());
+        for (int shard = 0; shard < count; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash("shard-" + shard + "#" + node), shard);
+            }
+        }
+        // one gather task per shard, each holding a connection of its own shard
+        this.executor = count == 1 ? null : Executors.newFixedThreadPool(count,
+                Thread.ofPlatform().name("cashcard-shards-", 0).daemon().factory());
+    }
+
+    /**
+     * Number of shards.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Shard holding the rows of the owner.
+     */
+    public int shardOf(String owner) {
+        if (count == 1) {
+            return 0;
+        }
+        Map.Entry<Long, Integer> point = ring.ceilingEntry(hash(owner));
+        return (point == null ? ring.firstEntry() : point).getValue();
+    }
+
+    /**
+     * Shard the current thread is bound to, 0 when none is bound.
+     */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    /**
+     * Run work with the current thread bound to a shard, then restore the previous binding.
+     */
+    public static <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = bind(shard);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Bind the current thread to a shard.
+     * @return the previous binding, to give back to {@link #restore(Integer)}
+     */
+    static Integer bind(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Run work on the shard of the owner.
+     */
+    public <T> T onShardOf(String owner, Supplier<T> work) {
+        return onShard(shardOf(owner), work);
+    }
+
+    /**
+     * Wrap a task handed over to another thread so that it runs on the shard of the thread that
+     * created it.
+     */
+    public static Runnable bindToCurrentShard(Runnable task) {
+        Integer shard = CURRENT.get();
+        if (shard == null) {
+            return task;
+        }
+        return () -> onShard(shard, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run work on every shard, one after the other, on the calling thread.
+     */
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            onShard(current, () -> {
+                work.accept(current);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Run work on every shard in parallel and gather the results.
+     * @return the result of each shard, by shard index
+     */
+    public <T> List<T> onEachShard(IntFunction<T> work) {
+        if (count == 1) {
+            return Collections.singletonList(onShard(0, () -> work.apply(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            futures.add(executor.submit(() -> onShard(current, () -> work.apply(current))));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> future : futures) {
+                results.add(await(future));
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the shards");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = hash << 8 | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.cashcard.sharding;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of lists that are each sorted, such as the results of the same ORDER BY query on
+ * every shard. A heap holds the head of each list, so taking n items costs n log k comparisons
+ * for k lists.
+ */
+public final class SortedMerge {
+
+    private SortedMerge() {
+    }
+
+    private record Head<T>(T item, Iterator<T> rest) {}
+
+    /**
+     * Merge the sorted lists and return a window of the merged order.
+     * @param sorted lists sorted by the order
+     * @param order order of the lists, make it total (with an id last) for a repeatable window
+     * @param skip number of merged items to skip
+     * @param limit maximum number of items to return
+     */
+    public static <T> List<T> merge(List<? extends List<T>> sorted, Comparator<? super T> order, int skip, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (a, b) -> order.compare(a.item(), b.item()));
+        for (List<T> list : sorted) {
+            Iterator<T> iterator = list.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+        List<T> merged = new ArrayList<>(Math.min(limit, 1024));
+        for (int position = 0; !heads.isEmpty() && merged.size() < limit; position++) {
+            Head<T> head = heads.poll();
+            if (position >= skip) {
+                merged.add(head.item());
+            }
+            if (head.rest().hasNext()) {
+                heads.add(new Head<>(head.rest().next(), head.rest()));
+            }
+        }
+        return merged;
+    }
+}
@@ -1,4 +1,8 @@
-INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (99, 123.45,'sarah1');
-INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (100, 1.00,'sarah1');
-INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (101, 150.00,'sarah1');
-INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (102, 200.00, 'kumar2');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (99, 12345,'sarah1');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (100, 100,'sarah1');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (101, 15000,'sarah1');
+INSERT INTO CASH_CARD(ID, AMOUNT, OWNER) VALUES (102, 20000, 'kumar2');
+-- the pooled optimizer hands out the 50 ids up to the sequence value, keep them above the seeded cards
+ALTER SEQUENCE CASH_CARD_SEQ RESTART WITH (SELECT MAX(ID) + 50 FROM CASH_CARD);
+INSERT INTO OWNER_SUMMARY(OWNER, CARD_COUNT, TOTAL_AMOUNT, MIN_AMOUNT, MAX_AMOUNT)
+    SELECT OWNER, COUNT(*), SUM(AMOUNT), MIN(AMOUNT), MAX(AMOUNT) FROM CASH_CARD GROUP BY OWNER;
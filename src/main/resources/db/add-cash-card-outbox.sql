@@ -0,0 +1,27 @@
+-- One-off migration of a database created before the change stream: adds the outbox the mutations
+-- record their events in and the row holding the positions of the relay.
+-- The in-memory database is rebuilt from schema.sql on every start and does not need it.
+-- Changes made before the migration are not in the stream, clients start from the current position.
+
+CREATE TABLE IF NOT EXISTS cash_card_outbox
+(
+    ID         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    SEQ        BIGINT UNIQUE,
+    OWNER      VARCHAR(256) NOT NULL,
+    CARD_ID    BIGINT NOT NULL,
+    TYPE       VARCHAR(16) NOT NULL,
+    AMOUNT     BIGINT,
+    VERSION    BIGINT,
+    CREATED_AT TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_cash_card_outbox_owner_seq ON cash_card_outbox (OWNER, SEQ);
+
+CREATE TABLE IF NOT EXISTS cash_card_outbox_relay
+(
+    ID         INT PRIMARY KEY,
+    LAST_SEQ   BIGINT NOT NULL,
+    PURGED_SEQ BIGINT NOT NULL
+);
+
+MERGE INTO cash_card_outbox_relay(ID, LAST_SEQ, PURGED_SEQ) KEY (ID) VALUES (1, 0, 0);
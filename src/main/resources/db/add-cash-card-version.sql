@@ -0,0 +1,5 @@
+-- One-off migration of a database created before cash cards had a version: adds the VERSION
+-- column that the optimistic lock and the ETag of GET /cashcards/{id} are based on.
+-- The in-memory database is rebuilt from schema.sql on every start and does not need it.
+
+ALTER TABLE cash_card ADD COLUMN IF NOT EXISTS VERSION BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- One-off migration of a database created before the admin analytics: adds the index that the
+-- owners with the highest balance of GET /cashcards/analytics are read from.
+-- The in-memory database is rebuilt from schema.sql on every start and does not need it.
+
+CREATE INDEX IF NOT EXISTS idx_owner_summary_total_amount ON owner_summary (TOTAL_AMOUNT DESC, OWNER);
@@ -0,0 +1,6 @@
+-- Tables of the local stand-in replica (application-replica.properties), run by every new replica
+-- connection: read-only links to the in-memory primary of the same JVM, for the tables read by
+-- read-only transactions. Not a migration, a real replica is a copy maintained by the database.
+
+CREATE LINKED TABLE IF NOT EXISTS cash_card('org.h2.Driver', 'jdbc:h2:mem:testdb', 'sa', '', 'CASH_CARD') READONLY;
+CREATE LINKED TABLE IF NOT EXISTS owner_summary('org.h2.Driver', 'jdbc:h2:mem:testdb', 'sa', '', 'OWNER_SUMMARY') READONLY;
@@ -0,0 +1,22 @@
+-- One-off migration of a database created before amounts were stored in minor units: converts
+-- AMOUNT NUMBER (123.45) to AMOUNT BIGINT (12345) in cash_card and owner_summary.
+-- The in-memory database is rebuilt from schema.sql on every start and does not need it.
+-- Fails without changing anything if an amount has more than two decimals.
+
+SET AUTOCOMMIT FALSE;
+
+-- amounts with sub-cent precision cannot be represented, stop on the first one
+SELECT CAST(CASE WHEN COUNT(*) = 0 THEN 0 ELSE 'sub-cent amounts found' END AS INT)
+FROM cash_card WHERE AMOUNT * 100 <> ROUND(AMOUNT * 100);
+
+UPDATE cash_card SET AMOUNT = ROUND(AMOUNT * 100);
+ALTER TABLE cash_card ALTER COLUMN AMOUNT SET DATA TYPE BIGINT;
+
+UPDATE owner_summary SET TOTAL_AMOUNT = ROUND(TOTAL_AMOUNT * 100),
+                         MIN_AMOUNT = ROUND(MIN_AMOUNT * 100),
+                         MAX_AMOUNT = ROUND(MAX_AMOUNT * 100);
+ALTER TABLE owner_summary ALTER COLUMN TOTAL_AMOUNT SET DATA TYPE BIGINT;
+ALTER TABLE owner_summary ALTER COLUMN MIN_AMOUNT SET DATA TYPE BIGINT;
+ALTER TABLE owner_summary ALTER COLUMN MAX_AMOUNT SET DATA TYPE BIGINT;
+
+COMMIT;
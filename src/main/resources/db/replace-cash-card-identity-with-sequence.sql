@@ -0,0 +1,12 @@
+-- One-off migration of a database created before ids came from cash_card_seq: replaces the
+-- IDENTITY of cash_card.ID with the pooled sequence Hibernate batches the inserts with.
+-- The in-memory database is rebuilt from schema.sql on every start and does not need it.
+-- Run it with the application stopped, the sequence restarts above the existing ids.
+
+CREATE SEQUENCE IF NOT EXISTS cash_card_seq START WITH 1 INCREMENT BY 50;
+
+-- the pooled optimizer hands out the 50 ids up to the sequence value
+ALTER SEQUENCE cash_card_seq RESTART WITH (SELECT COALESCE(MAX(ID), 0) + 50 FROM cash_card);
+
+ALTER TABLE cash_card ALTER COLUMN ID DROP IDENTITY;
+ALTER TABLE cash_card ALTER COLUMN ID SET DEFAULT NEXT VALUE FOR cash_card_seq;
@@ -1,6 +1,67 @@
+-- ids of cash_card, Hibernate reserves INCREMENT BY ids per call (pooled optimizer, see CashCard)
+CREATE SEQUENCE cash_card_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE cash_card
 (
-    ID     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    AMOUNT NUMBER NOT NULL DEFAULT 0,
-    OWNER VARCHAR(256) NOT NULL
+    ID     BIGINT DEFAULT NEXT VALUE FOR cash_card_seq PRIMARY KEY,
+    AMOUNT BIGINT NOT NULL DEFAULT 0, -- minor units, 12345 is 123.45
+    OWNER VARCHAR(256) NOT NULL,
+    VERSION BIGINT NOT NULL DEFAULT 0 -- optimistic lock, bumped by every update
 );
+
+-- keyset pagination of an owner's cards: WHERE owner = ? ORDER BY amount DESC, id
+CREATE INDEX idx_cash_card_owner_amount_id ON cash_card (OWNER, AMOUNT DESC, ID);
+
+-- admin amount range filter: WHERE amount BETWEEN ? AND ? ORDER BY amount DESC, id
+CREATE INDEX idx_cash_card_amount_id ON cash_card (AMOUNT DESC, ID);
+
+-- responses of completed requests made with an Idempotency-Key, with cashcard.idempotency.store=jdbc
+CREATE TABLE idempotency_key
+(
+    IDEMPOTENCY_KEY VARCHAR(1024) PRIMARY KEY, -- owner, operation and client key
+    FINGERPRINT     VARCHAR(64) NOT NULL,
+    STATUS          INT NOT NULL,
+    LOCATION        VARCHAR(2048),
+    CREATED_AT      TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key (CREATED_AT);
+
+-- per owner totals, maintained by CashCardService in the same transaction as the cash_card changes
+CREATE TABLE owner_summary
+(
+    OWNER        VARCHAR(256) PRIMARY KEY,
+    CARD_COUNT   BIGINT NOT NULL DEFAULT 0,
+    TOTAL_AMOUNT BIGINT NOT NULL DEFAULT 0,
+    MIN_AMOUNT   BIGINT,
+    MAX_AMOUNT   BIGINT
+);
+
+-- admin analytics, owners with the highest balance: ORDER BY total_amount DESC, owner LIMIT ?
+CREATE INDEX idx_owner_summary_total_amount ON owner_summary (TOTAL_AMOUNT DESC, OWNER);
+
+-- changes of cash cards, written in the same transaction as the change. SEQ is assigned by the
+-- relay in commit order once the row is visible, GET /cashcards/changes reads WHERE owner = ? AND seq > ?
+CREATE TABLE cash_card_outbox
+(
+    ID         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    SEQ        BIGINT UNIQUE, -- null until relayed
+    OWNER      VARCHAR(256) NOT NULL,
+    CARD_ID    BIGINT NOT NULL,
+    TYPE       VARCHAR(16) NOT NULL, -- CREATED, UPDATED or DELETED
+    AMOUNT     BIGINT, -- null for DELETED
+    VERSION    BIGINT, -- null for DELETED
+    CREATED_AT TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_cash_card_outbox_owner_seq ON cash_card_outbox (OWNER, SEQ);
+
+-- last position assigned by the relay and last position purged, one row locked by every relay run
+CREATE TABLE cash_card_outbox_relay
+(
+    ID         INT PRIMARY KEY,
+    LAST_SEQ   BIGINT NOT NULL,
+    PURGED_SEQ BIGINT NOT NULL
+);
+
+INSERT INTO cash_card_outbox_relay(ID, LAST_SEQ, PURGED_SEQ) VALUES (1, 0, 0);
@@ -0,0 +1,100 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardAnalyticsDTO;
+import com.example.cashcard.service.CashCardAnalytics;
+import com.example.cashcard.sharding.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the merged result of the segmented scans with the same aggregates computed by the
+ * database in one query.
+ */
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CashCardAnalyticsTest {
+
+	private static final int CARDS = 10_000;
+
+	@Autowired
+	CashCardAnalytics cashCardAnalytics;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	Shards shards;
+
+	@BeforeEach
+	public void seed() {
+		// sparse ids so that some segments are empty, amounts from 0.01 to 100.00
+		jdbcTemplate.update("INSERT INTO cash_card(id, amount, owner) SELECT 1000 + 3 * X, X, 'owner-' || MOD(X, 7) FROM SYSTEM_RANGE(1, ?)",
+				CARDS);
+		jdbcTemplate.update("DELETE FROM owner_summary");
+		jdbcTemplate.update("INSERT INTO owner_summary(owner, card_count, total_amount, min_amount, max_amount) "
+				+ "SELECT owner, COUNT(*), SUM(amount), MIN(amount), MAX(amount) FROM cash_card GROUP BY owner");
+	}
+
+	@Test
+	public void segmentedScanShouldMatchTheAggregatesOfTheDatabase() {
+		CashCardAnalyticsDTO analytics = cashCardAnalytics.analyze(10, 3);
+
+		Map<String, Object> expected = jdbcTemplate.queryForMap(
+				"SELECT COUNT(*) AS cards, SUM(amount) AS total, MIN(amount) AS low, MAX(amount) AS high FROM cash_card");
+		assertThat(analytics.getCount()).isEqualTo(((Number) expected.get("cards")).longValue());
+		assertThat(analytics.getSum()).isEqualTo(((Number) expected.get("total")).longValue());
+		assertThat(analytics.getMin()).isEqualTo(((Number) expected.get("low")).longValue());
+		assertThat(analytics.getMax()).isEqualTo(((Number) expected.get("high")).longValue());
+
+		assertThat(analytics.getHistogram()).hasSize(10);
+		long previousTo = analytics.getMin() - 1;
+		for (CashCardAnalyticsDTO.Bucket bucket : analytics.getHistogram()) {
+			assertThat(bucket.from()).isEqualTo(previousTo + 1);
+			assertThat(bucket.count()).isEqualTo(jdbcTemplate.queryForObject(
+					"SELECT COUNT(*) FROM cash_card WHERE amount BETWEEN ? AND ?", Long.class, bucket.from(), bucket.to()));
+			previousTo = bucket.to();
+		}
+		assertThat(previousTo).isEqualTo(analytics.getMax());
+
+		// 4096 fine buckets over 0.01 to 200.00: each percentile within 5 cents of the exact one
+		for (CashCardAnalyticsDTO.Percentile percentile : analytics.getPercentiles()) {
+			long rank = (long) Math.ceil(percentile.percentile() / 100.0 * analytics.getCount());
+			long exact = jdbcTemplate.queryForObject("SELECT amount FROM cash_card ORDER BY amount OFFSET ? ROWS FETCH FIRST 1 ROW ONLY",
+					Long.class, rank - 1);
+			assertThat(percentile.amount()).isBetween(exact - 5, exact + 5);
+		}
+
+		assertThat(analytics.getTopOwners()).extracting(CashCardAnalyticsDTO.OwnerBalance::owner)
+				.containsExactlyElementsOf(jdbcTemplate.queryForList(
+						"SELECT owner FROM owner_summary ORDER BY total_amount DESC, owner LIMIT 3", String.class));
+	}
+
+	@Test
+	public void resultShouldNotDependOnTheNumberOfSegments() {
+		CashCardAnalytics singleSegment = new CashCardAnalytics(jdbcTemplate, transactionManager, shards, 1, 1, 4096, 100);
+		try {
+			CashCardAnalyticsDTO expected = singleSegment.analyze(25, 5);
+			CashCardAnalyticsDTO actual = cashCardAnalytics.analyze(25, 5);
+
+			assertThat(actual.getCount()).isEqualTo(expected.getCount());
+			assertThat(actual.getSum()).isEqualTo(expected.getSum());
+			assertThat(actual.getHistogram()).isEqualTo(expected.getHistogram());
+			assertThat(actual.getPercentiles()).isEqualTo(expected.getPercentiles());
+			assertThat(actual.getTopOwners()).isEqualTo(expected.getTopOwners());
+		} finally {
+			singleSegment.destroy();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.BulkRequestReader;
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.service.CashCardService;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Counts the JDBC round trips (statement executions) issued by the bulk endpoints, to make sure
+ * they stay constant when the batch grows.
+ */
+// the outbox relay runs on its own connection, keep it from being counted
+@SpringBootTest(properties = "cashcard.outbox.relay-interval=PT1H")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CashCardBulkStatementCountTest {
+
+	private static final String OWNER = "bulk-owner";
+	private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+			"executeLargeUpdate", "executeBatch", "executeLargeBatch");
+	private static final AtomicInteger executions = new AtomicInteger();
+
+	@Autowired
+	CashCardService cashCardService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@TestConfiguration
+	static class StatementCountingConfig {
+		@Bean
+		static BeanPostProcessor statementCountingDataSource() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource dataSource) {
+						return countingProxy(dataSource, DataSource.class);
+					}
+					return bean;
+				}
+			};
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T countingProxy(T target, Class<T> type) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			if (EXECUTE_METHODS.contains(method.getName())) {
+				executions.incrementAndGet();
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if (result instanceof Connection connection) {
+				return countingProxy(connection, Connection.class);
+			}
+			if (result instanceof Statement && method.getReturnType().isInterface()) {
+				return countingProxy(result, (Class<Object>) method.getReturnType());
+			}
+			return result;
+		};
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+	}
+
+	@BeforeEach
+	public void seed() {
+		jdbcTemplate.update("INSERT INTO cash_card(id, amount, owner) SELECT 1000 + X, 1000, ? FROM SYSTEM_RANGE(1, 1000)", OWNER);
+		jdbcTemplate.update("INSERT INTO owner_summary(owner, card_count, total_amount, min_amount, max_amount) VALUES (?, 1000, 1000000, 1000, 1000)", OWNER);
+	}
+
+	private List<CashCardBulkUpdateDTO> updatesFor(int size) {
+		List<Long> ids = jdbcTemplate.queryForList(
+				"SELECT id FROM cash_card WHERE owner = ? ORDER BY id LIMIT ?", Long.class, OWNER, size);
+		List<CashCardBulkUpdateDTO> updates = new ArrayList<>(size);
+		for (Long id : ids) {
+			updates.add(new CashCardBulkUpdateDTO(id, 2000L));
+		}
+		return updates;
+	}
+
+	private int executionsFor(Runnable runnable) {
+		executions.set(0);
+		runnable.run();
+		return executions.get();
+	}
+
+	@Test
+	public void bulkUpdateStatementCountShouldNotGrowWithBatchSize() {
+		List<CashCardBulkUpdateDTO> small = updatesFor(10);
+		List<CashCardBulkUpdateDTO> large = updatesFor(1000);
+
+		int smallCount = executionsFor(() -> cashCardService.bulkUpdate(small, OWNER));
+		int largeCount = executionsFor(() -> cashCardService.bulkUpdate(large, OWNER));
+
+		assertThat(smallCount).isPositive();
+		assertThat(largeCount).isEqualTo(smallCount);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card WHERE owner = ? AND amount = 2000", Integer.class, OWNER))
+				.isEqualTo(1000);
+	}
+
+	@Test
+	public void bulkUpdateShouldNotWriteAnythingWhenOneCardIsNotOwned() {
+		List<CashCardBulkUpdateDTO> updates = new ArrayList<>(updatesFor(100));
+		updates.add(new CashCardBulkUpdateDTO(102L, 100L)); // kumar2's card
+
+		assertThatThrownBy(() -> cashCardService.bulkUpdate(updates, OWNER))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card WHERE owner = ? AND amount = 2000", Integer.class, OWNER))
+				.isZero();
+	}
+
+	@Test
+	public void bulkDeleteStatementCountShouldNotGrowWithBatchSize() {
+		List<Long> small = jdbcTemplate.queryForList(
+				"SELECT id FROM cash_card WHERE owner = ? ORDER BY id LIMIT 10", Long.class, OWNER);
+		int smallCount = executionsFor(() -> cashCardService.bulkDeleteCashCard(small, OWNER));
+		List<Long> large = jdbcTemplate.queryForList(
+				"SELECT id FROM cash_card WHERE owner = ? ORDER BY id", Long.class, OWNER);
+		int largeCount = executionsFor(() -> cashCardService.bulkDeleteCashCard(large, OWNER));
+
+		assertThat(smallCount).isPositive();
+		assertThat(largeCount).isEqualTo(smallCount);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card WHERE owner = ?", Integer.class, OWNER)).isZero();
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT card_count FROM owner_summary WHERE owner = ?", Integer.class, OWNER)).isZero();
+	}
+
+	@Test
+	public void bulkDeleteShouldNotDeleteAnythingWhenACardInALaterChunkIsNotOwned() {
+		List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList(
+				"SELECT id FROM cash_card WHERE owner = ? ORDER BY id", Long.class, OWNER));
+		ids.add(102L); // kumar2's card, lands in the second chunk
+
+		assertThatThrownBy(() -> cashCardService.bulkDeleteCashCard(ids, OWNER))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card WHERE owner = ?", Integer.class, OWNER)).isEqualTo(1000);
+	}
+
+	private static BulkRequestReader reader(List<Long> ids) throws IOException {
+		return new BulkRequestReader(new JsonFactory().createParser(ids.toString()));
+	}
+
+	@Test
+	public void streamedBulkDeleteShouldAcceptAnIdRepeatedInALaterChunk() throws IOException {
+		List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList(
+				"SELECT id FROM cash_card WHERE owner = ? ORDER BY id", Long.class, OWNER));
+		ids.add(ids.get(0)); // deleted by the first chunk
+
+		assertThat(cashCardService.bulkDeleteCashCard(reader(ids), OWNER)).isEqualTo(1001);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card WHERE owner = ?", Integer.class, OWNER)).isZero();
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT card_count FROM owner_summary WHERE owner = ?", Integer.class, OWNER)).isZero();
+
+		// a card deleted by an earlier request is still unknown
+		assertThatThrownBy(() -> cashCardService.bulkDeleteCashCard(reader(List.of(1001L)), OWNER))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void streamedBulkDeleteShouldRejectAnUnownedCardNextToARepeatedId() {
+		List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList(
+				"SELECT id FROM cash_card WHERE owner = ? ORDER BY id", Long.class, OWNER));
+		ids.add(ids.get(0));
+		ids.add(102L); // kumar2's card
+
+		assertThatThrownBy(() -> cashCardService.bulkDeleteCashCard(reader(ids), OWNER))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card WHERE owner = ?", Integer.class, OWNER)).isEqualTo(1000);
+	}
+
+	@Test
+	public void batchCreateShouldOnlyAddASequenceCallPerBlockOfIds() {
+		List<CashCardRequestDTO> small = new ArrayList<>();
+		List<CashCardRequestDTO> large = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			(i < 10 ? small : large).add(new CashCardRequestDTO(100L));
+		}
+		large.addAll(small);
+		// generated ids above the seeded cards
+		jdbcTemplate.execute("ALTER SEQUENCE cash_card_seq RESTART WITH 3000");
+
+		int smallCount = executionsFor(() -> cashCardService.createCashCards(small, OWNER));
+		int largeCount = executionsFor(() -> cashCardService.createCashCards(large, OWNER));
+
+		assertThat(smallCount).isPositive();
+		// 50 ids per sequence call, the inserts and their outbox events are one batch each
+		assertThat(largeCount).isLessThanOrEqualTo(smallCount + 1000 / 50);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT card_count FROM owner_summary WHERE owner = ?", Integer.class, OWNER)).isEqualTo(2010);
+	}
+}
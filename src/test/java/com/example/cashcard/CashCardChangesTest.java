@@ -0,0 +1,193 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.outbox.OutboxRelay;
+import com.example.cashcard.service.CashCardService;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The relay only runs when a test calls it, so the positions given to the events are known.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"cashcard.outbox.relay-interval=PT1H", "cashcard.outbox.purge-interval=PT1H", "cashcard.outbox.retention=0s"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CashCardChangesTest {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	CashCardService cashCardService;
+
+	@Autowired
+	OutboxRelay outboxRelay;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@LocalServerPort
+	int port;
+
+	private DocumentContext changes(String username, String password, String query) {
+		ResponseEntity<String> response = restTemplate.withBasicAuth(username, password)
+				.getForEntity("/cashcards/changes" + query, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		return JsonPath.parse(response.getBody());
+	}
+
+	@Test
+	public void changesShouldBeStreamedInOrderToTheirOwnerOnly() {
+		assertThat(changes("sarah1", "abc123", "").read("$.next", Long.class)).isZero();
+
+		URI location = restTemplate.withBasicAuth("sarah1", "abc123")
+				.postForLocation("/cashcards", new CashCardRequestDTO(25000L));
+		restTemplate.withBasicAuth("sarah1", "abc123")
+				.exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCardRequestDTO(26000L)), Void.class);
+		restTemplate.withBasicAuth("sarah1", "abc123").exchange("/cashcards/bulk", HttpMethod.PUT,
+				new HttpEntity<>(List.of(new CashCardBulkUpdateDTO(99L, 500L), new CashCardBulkUpdateDTO(100L, 600L))), Void.class);
+		// rolled back, kumar2 owns 102: no event
+		ResponseEntity<Void> rejected = restTemplate.withBasicAuth("sarah1", "abc123").exchange("/cashcards/bulk",
+				HttpMethod.DELETE, new HttpEntity<>(List.of(99L, 102L)), Void.class);
+		assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		restTemplate.withBasicAuth("sarah1", "abc123").exchange(location, HttpMethod.DELETE, null, Void.class);
+
+		assertThat(changes("sarah1", "abc123", "?since=0").read("$.changes.length()", Integer.class)).isZero();
+		outboxRelay.relay();
+
+		DocumentContext sarah = changes("sarah1", "abc123", "?since=0");
+		Number newId = Long.valueOf(location.getPath().substring(location.getPath().lastIndexOf('/') + 1));
+		List<Integer> seqs = sarah.read("$.changes[*].seq");
+		List<String> types = sarah.read("$.changes[*].type");
+		List<Integer> ids = sarah.read("$.changes[*].id");
+		assertThat(seqs).containsExactly(1, 2, 3, 4, 5);
+		assertThat(types).containsExactly("CREATED", "UPDATED", "UPDATED", "UPDATED", "DELETED");
+		assertThat(ids).containsExactly(newId.intValue(), newId.intValue(), 99, 100, newId.intValue());
+		assertThat(sarah.read("$.changes[1].amount", Double.class)).isEqualTo(260.00);
+		assertThat(sarah.read("$.changes[1].version", Integer.class)).isEqualTo(1);
+		assertThat(sarah.read("$.changes[2].amount", Double.class)).isEqualTo(5.00);
+		Map<String, Object> deleted = sarah.read("$.changes[4]");
+		assertThat(deleted).doesNotContainKeys("amount", "version");
+		assertThat(sarah.read("$.next", Long.class)).isEqualTo(5);
+
+		DocumentContext page = changes("sarah1", "abc123", "?since=2&limit=2");
+		List<Integer> pageSeqs = page.read("$.changes[*].seq");
+		assertThat(pageSeqs).containsExactly(3, 4);
+		assertThat(page.read("$.next", Long.class)).isEqualTo(4);
+
+		DocumentContext kumar = changes("kumar2", "xyz789", "?since=0");
+		assertThat(kumar.read("$.changes.length()", Integer.class)).isZero();
+		assertThat(kumar.read("$.next", Long.class)).isZero();
+		assertThat(changes("kumar2", "xyz789", "").read("$.next", Long.class)).isEqualTo(5);
+	}
+
+	@Test
+	public void longPollShouldAnswerOnceAChangeIsPublished() throws Exception {
+		long start = System.nanoTime();
+		DocumentContext nothing = changes("sarah1", "abc123", "?since=0&wait=1");
+		assertThat(nothing.read("$.changes.length()", Integer.class)).isZero();
+		assertThat(nothing.read("$.next", Long.class)).isZero();
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+
+		CompletableFuture<DocumentContext> poll = CompletableFuture.supplyAsync(
+				() -> changes("sarah1", "abc123", "?since=0&wait=20"));
+		Thread.sleep(200);
+		cashCardService.createCashCard(new CashCardRequestDTO(700L), "kumar2");
+		outboxRelay.relay();
+		cashCardService.createCashCard(new CashCardRequestDTO(800L), "sarah1");
+		assertThat(poll.isDone()).isFalse();
+		start = System.nanoTime();
+		outboxRelay.relay();
+
+		DocumentContext published = poll.get(10, TimeUnit.SECONDS);
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(10));
+		List<Integer> publishedSeqs = published.read("$.changes[*].seq");
+		assertThat(publishedSeqs).containsExactly(2);
+		assertThat(published.read("$.changes[0].amount", Double.class)).isEqualTo(8.00);
+		assertThat(published.read("$.next", Long.class)).isEqualTo(2);
+	}
+
+	@Test
+	public void eventStreamShouldSendTheBacklogThenThePublishedChanges() throws Exception {
+		cashCardService.createCashCard(new CashCardRequestDTO(700L), "sarah1");
+		outboxRelay.relay();
+
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/changes?since=0"))
+				.header("Authorization", "Basic " + Base64.getEncoder().encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8)))
+				.header("Accept", "text/event-stream")
+				.build();
+		HttpResponse<InputStream> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+		assertThat(response.statusCode()).isEqualTo(200);
+		try (BufferedReader events = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+			assertThat(nextEvent(events)).contains("id:1", "event:change").anyMatch(line -> line.contains("\"type\":\"CREATED\""));
+
+			cashCardService.createCashCard(new CashCardRequestDTO(800L), "sarah1");
+			outboxRelay.relay();
+			assertThat(nextEvent(events)).contains("id:2").anyMatch(line -> line.contains("\"amount\":8.00"));
+		}
+	}
+
+	private static List<String> nextEvent(BufferedReader events) throws Exception {
+		return CompletableFuture.supplyAsync(() -> {
+			List<String> lines = new ArrayList<>();
+			try {
+				for (String line; (line = events.readLine()) != null && !(line.isEmpty() && !lines.isEmpty()); ) {
+					if (!line.isEmpty()) {
+						lines.add(line);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return lines;
+		}).get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void purgedPositionsShouldAskForAResynchronization() {
+		cashCardService.createCashCard(new CashCardRequestDTO(700L), "sarah1");
+		cashCardService.createCashCard(new CashCardRequestDTO(800L), "sarah1");
+		outboxRelay.relay();
+		outboxRelay.purgeExpired();
+
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cash_card_outbox", Integer.class)).isZero();
+		ResponseEntity<String> expired = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/changes?since=1", String.class);
+		assertThat(expired.getStatusCode()).isEqualTo(HttpStatus.GONE);
+
+		long head = changes("sarah1", "abc123", "").read("$.next", Long.class);
+		assertThat(head).isEqualTo(2);
+		assertThat(changes("sarah1", "abc123", "?since=" + head).read("$.changes.length()", Integer.class)).isZero();
+	}
+}
@@ -1,6 +1,7 @@
 package com.example.cashcard;
 
 import com.example.cashcard.model.CashCard;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import org.assertj.core.util.Arrays;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +13,7 @@ import org.springframework.boot.test.autoconfigure.json.JsonTest;
 import java.io.IOException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JsonTest
 public class CashCardJsonTest {
@@ -26,13 +28,13 @@ public class CashCardJsonTest {
 
     @BeforeEach
     public void setUp(){
-        cashCards = Arrays.array( new CashCard(99L, 123.45,"sarah1"),
-                new CashCard(100L, 1.00,"sarah1"),
-                new CashCard(101L, 150.00,"sarah1"));
+        cashCards = Arrays.array( new CashCard(99L, 12345L,"sarah1"),
+                new CashCard(100L, 100L,"sarah1"),
+                new CashCard(101L, 15000L,"sarah1"));
     }
     @Test
     public void cashCardSerializationTest() throws IOException {
-        CashCard cashCard = new CashCard(99L, 123.45,"sarah1");
+        CashCard cashCard = new CashCard(99L, 12345L,"sarah1");
         assertThat(json.write(cashCard)).isStrictlyEqualToJson("expected.json");
         assertThat(json.write(cashCard)).hasJsonPathNumberValue("@.id");
         assertThat(json.write(cashCard)).extractingJsonPathNumberValue("@.id")
@@ -47,9 +49,9 @@ public class CashCardJsonTest {
         String expected = """
                 {"id":99,
                 "amount":100,"owner":"sarah1"}""";
-        assertThat(json.parse(expected)).isNotEqualTo(new CashCard(100L,90.0,"sarah1"));
+        assertThat(json.parse(expected)).isNotEqualTo(new CashCard(100L, 9000L,"sarah1"));
         assertThat(json.parseObject(expected).getId()).isEqualTo(99);
-        assertThat(json.parseObject(expected).getAmount()).isEqualTo(100);
+        assertThat(json.parseObject(expected).getAmount()).isEqualTo(10000); // minor units
     }
 
     @Test
@@ -68,4 +70,16 @@ public class CashCardJsonTest {
                 """;
         assertThat(jsonList.parse(expected)).isEqualTo(cashCards);
     }
+
+    @Test
+    public void amountShouldBeReadAndWrittenAsAnExactDecimal() throws IOException {
+        // 0.29 * 100 is 28.999999999999996 in double arithmetic
+        assertThat(json.parseObject("{\"id\":1,\"amount\":0.29}").getAmount()).isEqualTo(29);
+        assertThat(json.parseObject("{\"id\":1,\"amount\":\"1e2\"}").getAmount()).isEqualTo(10000);
+        assertThat(json.write(new CashCard(1L, 5L, "sarah1"))).extractingJsonPathNumberValue("@.amount")
+                .isEqualTo(0.05);
+        assertThat(json.write(new CashCard(1L, 12345678901L, "sarah1")).getJson()).contains("\"amount\":123456789.01");
+        assertThatThrownBy(() -> json.parseObject("{\"id\":1,\"amount\":1.005}"))
+                .isInstanceOf(JsonMappingException.class);
+    }
 }
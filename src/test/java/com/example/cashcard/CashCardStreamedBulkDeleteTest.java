@@ -0,0 +1,107 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.BulkRequestReader;
+import com.example.cashcard.service.CashCardService;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Streamed bulk deletes read in chunks of two ids, with the ids already deleted spilled to a file
+ * after two of them, so repeats and concurrent deletes span chunks and the spill file.
+ */
+@SpringBootTest(properties = {"cashcard.bulk.chunk-size=2", "cashcard.bulk.spill-threshold=2"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CashCardStreamedBulkDeleteTest {
+
+	private static final String OWNER = "stream-owner";
+
+	@Autowired
+	CashCardService cashCardService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	public void seed() {
+		jdbcTemplate.update("INSERT INTO cash_card(id, amount, owner) SELECT 2000 + X, 1000, ? FROM SYSTEM_RANGE(1, 6)", OWNER);
+		jdbcTemplate.update("INSERT INTO owner_summary(owner, card_count, total_amount, min_amount, max_amount) VALUES (?, 6, 6000, 1000, 1000)", OWNER);
+	}
+
+	private static BulkRequestReader reader(List<Long> ids) throws IOException {
+		return new BulkRequestReader(new JsonFactory().createParser(ids.toString()));
+	}
+
+	private int remaining() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cash_card WHERE owner = ?", Integer.class, OWNER);
+	}
+
+	@Test
+	public void shouldAcceptIdsRepeatedAcrossChunks() throws IOException {
+		// chunks [2001, 2002] [2003, 2001] [2004, 2002] [2005, 2006]
+		List<Long> ids = List.of(2001L, 2002L, 2003L, 2001L, 2004L, 2002L, 2005L, 2006L);
+
+		assertThat(cashCardService.bulkDeleteCashCard(reader(ids), OWNER)).isEqualTo(8);
+		assertThat(remaining()).isZero();
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT card_count FROM owner_summary WHERE owner = ?", Integer.class, OWNER)).isZero();
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM cash_card_outbox WHERE owner = ? AND type = 'DELETED'", Integer.class, OWNER))
+				.isEqualTo(6);
+	}
+
+	@Test
+	public void shouldRejectACardDeletedByAnotherRequestInALaterChunk() throws IOException {
+		// chunks [2001, 2002] [2003, 2004]
+		BulkRequestReader reader = new BulkRequestReader(
+				new JsonFactory().createParser(List.of(2001L, 2002L, 2003L, 2004L).toString())) {
+			private int reads;
+
+			@Override
+			public int readIds(long[] ids) {
+				if (reads++ == 1) {
+					deleteConcurrently(2004L);
+				}
+				return super.readIds(ids);
+			}
+		};
+
+		assertThatThrownBy(() -> cashCardService.bulkDeleteCashCard(reader, OWNER))
+				.isInstanceOf(IllegalArgumentException.class);
+		// the first chunk is rolled back, only the concurrent delete stays
+		assertThat(remaining()).isEqualTo(5);
+	}
+
+	@Test
+	public void shouldRejectACardDeletedByAnotherRequestInTheFirstChunk() throws IOException {
+		deleteConcurrently(2001L);
+
+		assertThatThrownBy(() -> cashCardService.bulkDeleteCashCard(reader(List.of(2001L, 2002L, 2003L)), OWNER))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(remaining()).isEqualTo(5);
+	}
+
+	/**
+	 * Delete and commit a card on another connection, while the streamed delete is running.
+	 */
+	private void deleteConcurrently(long id) {
+		Thread other = new Thread(() -> jdbcTemplate.update("DELETE FROM cash_card WHERE id = ?", id));
+		other.start();
+		try {
+			other.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardTransferDTO;
+import com.example.cashcard.error.TransferRejectedException;
+import com.example.cashcard.service.CashCardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs transfers between a few cards from many threads at once, so most transfers queue on the
+ * same rows, and checks that no amount is created or lost. The load can be raised with
+ * <pre>
+ * mvn test -Dtest=CashCardTransferStressTest -Dstress.threads=16 -Dstress.transfers=5000
+ * </pre>
+ */
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CashCardTransferStressTest {
+
+	private static final String OWNER = "transfer-owner";
+	private static final int CARDS = 10;
+	private static final long INITIAL_AMOUNT = 10_000;
+	private static final int THREADS = Integer.getInteger("stress.threads", 8);
+	private static final int TRANSFERS_PER_THREAD = Integer.getInteger("stress.transfers", 250);
+	private static final Logger log = LoggerFactory.getLogger(CashCardTransferStressTest.class);
+
+	@Autowired
+	CashCardService cashCardService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	public void seed() {
+		jdbcTemplate.update("INSERT INTO cash_card(id, amount, owner) SELECT 1000 + X, ?, ? FROM SYSTEM_RANGE(1, ?)",
+				INITIAL_AMOUNT, OWNER, CARDS);
+		jdbcTemplate.update("INSERT INTO owner_summary(owner, card_count, total_amount, min_amount, max_amount) VALUES (?, ?, ?, ?, ?)",
+				OWNER, CARDS, CARDS * INITIAL_AMOUNT, INITIAL_AMOUNT, INITIAL_AMOUNT);
+	}
+
+	@Test
+	public void concurrentTransfersShouldConserveTheTotalAmount() throws Exception {
+		AtomicInteger done = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+					long from = 1001 + random.nextInt(CARDS);
+					long to = 1001 + (from - 1001 + 1 + random.nextInt(CARDS - 1)) % CARDS;
+					try {
+						cashCardService.transfer(new CashCardTransferDTO(from, to, 1 + random.nextLong(2_000)), OWNER);
+						done.incrementAndGet();
+					} catch (TransferRejectedException e) {
+						rejected.incrementAndGet();
+					}
+				}
+				return null;
+			}));
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(); // rethrows a transfer that failed for another reason than the balance
+		}
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		executor.shutdown();
+		log.info("{} threads, {} transfers done, {} rejected, {} transfers/s",
+				THREADS, done.get(), rejected.get(), String.format("%.1f", (done.get() + rejected.get()) / seconds));
+
+		assertThat(done.get() + rejected.get()).isEqualTo(THREADS * TRANSFERS_PER_THREAD);
+		assertThat(done.get()).isPositive();
+		Map<String, Object> actual = jdbcTemplate.queryForMap(
+				"SELECT COUNT(*) AS cards, SUM(amount) AS total, MIN(amount) AS low, MAX(amount) AS high FROM cash_card WHERE owner = ?",
+				OWNER);
+		assertThat(((Number) actual.get("cards")).longValue()).isEqualTo(CARDS);
+		assertThat(((Number) actual.get("total")).longValue()).isEqualTo(CARDS * INITIAL_AMOUNT);
+		assertThat(((Number) actual.get("low")).longValue()).isPositive();
+
+		Map<String, Object> summary = jdbcTemplate.queryForMap(
+				"SELECT card_count, total_amount, min_amount, max_amount FROM owner_summary WHERE owner = ?", OWNER);
+		assertThat(((Number) summary.get("card_count")).longValue()).isEqualTo(CARDS);
+		assertThat(((Number) summary.get("total_amount")).longValue()).isEqualTo(CARDS * INITIAL_AMOUNT);
+		assertThat(((Number) summary.get("min_amount")).longValue()).isEqualTo(((Number) actual.get("low")).longValue());
+		assertThat(((Number) summary.get("max_amount")).longValue()).isEqualTo(((Number) actual.get("high")).longValue());
+	}
+}
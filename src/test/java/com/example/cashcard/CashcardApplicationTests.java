@@ -2,33 +2,52 @@ package com.example.cashcard;
 
 import com.example.cashcard.dto.CashCardBulkUpdateDTO;
 import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.dto.CashCardTransferDTO;
+import com.example.cashcard.service.AmountHistogram;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import net.minidev.json.JSONArray;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.jdbc.Sql;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest (webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false) // keep the Prometheus registry, Spring Boot tests disable it by default
 @Sql("/data.sql")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class CashcardApplicationTests {
 	@Autowired
 	TestRestTemplate restTemplate;
 
+	@Autowired
+	AmountHistogram amountHistogram;
+
+	@Autowired
+	UserDetailsManager userDetailsManager;
+
+	@Autowired
+	PasswordEncoder passwordEncoder;
+
 	@Test
 	public void shouldReturnCashCardWhenDataIsSaved(){
 		ResponseEntity<String> response =
@@ -54,7 +73,7 @@ public class CashcardApplicationTests {
 	@Test
 	@DirtiesContext
 	public void shouldCreateANewCashCard(){
-		CashCardRequestDTO cashCardRequestDTO = new CashCardRequestDTO(250.00);
+		CashCardRequestDTO cashCardRequestDTO = new CashCardRequestDTO(25000L);
 		ResponseEntity<Void> response = restTemplate.withBasicAuth("sarah1","abc123").postForEntity("/cashcards", cashCardRequestDTO, Void.class);
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
 
@@ -67,6 +86,66 @@ public class CashcardApplicationTests {
 		assertThat(amount).isEqualTo(250.00);
 	}
 
+	@Test
+	// only the test data.sql moves the sequence, not the main one run at startup
+	@Sql(statements = "ALTER SEQUENCE CASH_CARD_SEQ RESTART WITH 1")
+	@Sql("/data.sql")
+	public void shouldCreateABatchAboveTheSeededIdsOfTheTestData(){
+		List<CashCardRequestDTO> batch = new ArrayList<>();
+		for (long i = 1; i <= 150; i++) {
+			batch.add(new CashCardRequestDTO(100L));
+		}
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/batch", batch, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		List<Number> ids = JsonPath.parse(response.getBody()).read("$");
+		assertThat(ids).hasSize(150).doesNotHaveDuplicates().doesNotContain(99, 100, 101, 102);
+		assertThat(summaryOf("sarah1", "abc123").read("$.count", Integer.class)).isEqualTo(153);
+	}
+
+	@Test
+	public void shouldCreateABatchOfCashCardsInOneRequest(){
+		List<CashCardRequestDTO> batch = new ArrayList<>();
+		for (long i = 1; i <= 120; i++) { // more than one block of pooled ids
+			batch.add(new CashCardRequestDTO(i * 100));
+		}
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/batch", batch, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		List<Number> ids = JsonPath.parse(response.getBody()).read("$");
+		assertThat(ids).hasSize(120).doesNotHaveDuplicates().doesNotContain(99, 100, 101, 102);
+
+		ResponseEntity<String> last = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/" + ids.get(119), String.class);
+		assertThat(JsonPath.parse(last.getBody()).read("$.amount", Double.class)).isEqualTo(120.00);
+		DocumentContext summary = summaryOf("sarah1", "abc123");
+		assertThat(summary.read("$.count", Integer.class)).isEqualTo(123);
+		assertThat(summary.read("$.sum", Double.class)).isEqualTo(7534.45);
+		assertThat(summary.read("$.min", Double.class)).isEqualTo(1.00);
+
+		// a single create still gets an unused id
+		ResponseEntity<Void> single = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards", new CashCardRequestDTO(700L), Void.class);
+		assertThat(single.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+	}
+
+	@Test
+	public void shouldNotCreateAnyCashCardOfAnInvalidBatch(){
+		ResponseEntity<String> invalid = restTemplate.withBasicAuth("sarah1","abc123").postForEntity("/cashcards/batch",
+				List.of(new CashCardRequestDTO(100L), new CashCardRequestDTO(-100L)), String.class);
+		assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(JsonPath.parse(invalid.getBody()).read("$['[1].amount']", String.class))
+				.isEqualTo("Amount must be greater than 0.");
+		ResponseEntity<Void> empty = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/batch", List.of(), Void.class);
+		assertThat(empty.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		ResponseEntity<Void> notOwner = restTemplate.withBasicAuth("hank-owns-no-cards","qrs456")
+				.postForEntity("/cashcards/batch", List.of(new CashCardRequestDTO(100L)), Void.class);
+		assertThat(notOwner.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+
+		assertThat(summaryOf("sarah1", "abc123").read("$.count", Integer.class)).isEqualTo(3);
+	}
+
 	@Test
 	public void shouldReturnAllCashCardsWhenListIsRequested(){
 		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123").getForEntity("/cashcards", String.class);
@@ -123,6 +202,51 @@ public class CashcardApplicationTests {
 		assertThat(amounts).containsExactly(150.00,123.45,1.00);
 	}
 
+	@Test
+	public void shouldScrollThroughCashCardsWithACursor(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards?after=&size=2", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray amounts = documentContext.read("$.content[*].amount");
+		assertThat(amounts).containsExactly(150.00, 123.45);
+		String next = documentContext.read("$.next");
+		assertThat(next).isNotBlank();
+
+		ResponseEntity<String> nextResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards?after={after}&size=2", String.class, next);
+		assertThat(nextResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext nextDocumentContext = JsonPath.parse(nextResponse.getBody());
+		JSONArray ids = nextDocumentContext.read("$.content[*].id");
+		assertThat(ids).containsExactly(100);
+		String last = nextDocumentContext.read("$.next");
+		assertThat(last).isNull();
+	}
+
+	@Test
+	public void shouldRejectAnInvalidCursor(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards?after=not-a-cursor", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void shouldExportAllCashCardsAsNdjson(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/export", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+		String[] lines = response.getBody().split("\n");
+		assertThat(lines).hasSize(3);
+		Number firstId = JsonPath.parse(lines[0]).read("$.id");
+		Double lastAmount = JsonPath.parse(lines[2]).read("$.amount");
+		assertThat(firstId).isEqualTo(99);
+		assertThat(lastAmount).isEqualTo(150.00);
+	}
+
 	@Test
 	public void shouldNotReturnACashCardWhenUsingBadCredentials(){
 		ResponseEntity <String> responseBadUser = restTemplate
@@ -160,7 +284,7 @@ public class CashcardApplicationTests {
 	@Test
 	@DirtiesContext
 	public void shouldUpdateAnExistingCashCard(){
-		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(19.99));
+		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(1999L));
 
 		ResponseEntity<Void> response = restTemplate
 				.withBasicAuth("sarah1","abc123")
@@ -177,10 +301,74 @@ public class CashcardApplicationTests {
 		assertThat(amount).isEqualTo(19.99);
 	}
 
+	@Test
+	public void shouldNotReturnACachedCashCardAfterItIsUpdatedOrDeleted(){
+		ResponseEntity<String> cachedResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		Double cachedAmount = JsonPath.parse(cachedResponse.getBody()).read("$.amount");
+		assertThat(cachedAmount).isEqualTo(123.45);
+
+		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(1999L));
+		restTemplate.withBasicAuth("sarah1","abc123")
+				.exchange("/cashcards/99", HttpMethod.PUT, request, Void.class);
+		ResponseEntity<String> updatedResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		Double updatedAmount = JsonPath.parse(updatedResponse.getBody()).read("$.amount");
+		assertThat(updatedAmount).isEqualTo(19.99);
+
+		HttpEntity<List<CashCardBulkUpdateDTO>> bulkRequest = new HttpEntity<>(List.of(new CashCardBulkUpdateDTO(99L, 500L)));
+		restTemplate.withBasicAuth("sarah1","abc123")
+				.exchange("/cashcards/bulk", HttpMethod.PUT, bulkRequest, Void.class);
+		ResponseEntity<String> bulkUpdatedResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		Double bulkUpdatedAmount = JsonPath.parse(bulkUpdatedResponse.getBody()).read("$.amount");
+		assertThat(bulkUpdatedAmount).isEqualTo(5.0);
+
+		restTemplate.withBasicAuth("sarah1","abc123")
+				.exchange("/cashcards/bulk", HttpMethod.DELETE, new HttpEntity<>(List.of(99L)), Void.class);
+		ResponseEntity<String> deletedResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(deletedResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	public void shouldExposeCacheMetricsToAdmins(){
+		restTemplate.withBasicAuth("sarah1","abc123").getForEntity("/cashcards/99", String.class);
+		restTemplate.withBasicAuth("sarah1","abc123").getForEntity("/cashcards/99", String.class);
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/actuator/metrics/cache.gets?tag=cache:cashcard&tag=result:hit", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Double hits = JsonPath.parse(response.getBody()).read("$.measurements[0].value");
+		assertThat(hits).isEqualTo(1.0);
+
+		ResponseEntity<String> forbidden = restTemplate.withBasicAuth("kumar2","xyz789")
+				.getForEntity("/actuator/metrics/cache.gets", String.class);
+		assertThat(forbidden.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+	}
+
+	@Test
+	public void shouldExposeLatencyAndBulkMetricsInPrometheusFormat(){
+		restTemplate.withBasicAuth("sarah1","abc123").getForEntity("/cashcards/99", String.class);
+		restTemplate.withBasicAuth("sarah1","abc123")
+				.exchange("/cashcards/bulk", HttpMethod.PUT, new HttpEntity<>(List.of(new CashCardBulkUpdateDTO(99L, 500L))), Void.class);
+		restTemplate.withBasicAuth("sarah1","abc123")
+				.exchange("/cashcards/bulk", HttpMethod.DELETE, new HttpEntity<>(List.of(102L)), Void.class);
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/actuator/prometheus", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody())
+				.contains("http_server_requests_seconds_bucket")
+				.containsPattern("spring_data_repository_invocations_seconds_bucket\\{.*method=\"findByIdAndOwner\"")
+				.containsPattern("cashcard_bulk_batch_size_cashcards_count\\{.*operation=\"update\".*} 1.0")
+				.containsPattern("cashcard_bulk_rejected_total\\{.*operation=\"delete\",reason=\"not-owned\".*} 1.0");
+	}
+
 	@Test
 	public void shouldNotUpdateACashCardThatDoesNotExist() {
 
-		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(888.88));
+		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(88888L));
 		ResponseEntity<Void> response = restTemplate
 				.withBasicAuth("sarah1","abc123")
 				.exchange("/cashcards/10000", HttpMethod.PUT, request, Void.class);
@@ -190,7 +378,7 @@ public class CashcardApplicationTests {
 
 	@Test
 	public void shouldNotUpdateACashCardThatIsOwnedBySomeoneElse(){
-		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(33.33));
+		HttpEntity<CashCardRequestDTO> request = new HttpEntity<>(new CashCardRequestDTO(3333L));
 		ResponseEntity<Void> response = restTemplate
 				.withBasicAuth("sarah1","abc123")
 				.exchange("/cashcards/102", HttpMethod.PUT, request, Void.class);
@@ -238,8 +426,8 @@ public class CashcardApplicationTests {
 
 	@Test
 	public void shouldUpdateSelectedExistCashCards(){
-		List<CashCardBulkUpdateDTO> cashcards = List.of(new CashCardBulkUpdateDTO(99L,1.0),
-				new CashCardBulkUpdateDTO(100L,2.0)
+		List<CashCardBulkUpdateDTO> cashcards = List.of(new CashCardBulkUpdateDTO(99L, 100L),
+				new CashCardBulkUpdateDTO(100L, 200L)
 				);
 		HttpEntity<List<CashCardBulkUpdateDTO>> request = new HttpEntity<>(cashcards);
 		ResponseEntity<Void> response = restTemplate
@@ -257,9 +445,9 @@ public class CashcardApplicationTests {
 
 	@Test
 	public void shouldNotUpdateAnythingIfNotOwnedCashCardInTheList(){
-		List<CashCardBulkUpdateDTO> cashcards = List.of(new CashCardBulkUpdateDTO(99L,1.0),
-				new CashCardBulkUpdateDTO(100L,2.0),
-				new CashCardBulkUpdateDTO(102L,3.0)
+		List<CashCardBulkUpdateDTO> cashcards = List.of(new CashCardBulkUpdateDTO(99L, 100L),
+				new CashCardBulkUpdateDTO(100L, 200L),
+				new CashCardBulkUpdateDTO(102L, 300L)
 		);
 		HttpEntity<List<CashCardBulkUpdateDTO>> request = new HttpEntity<>(cashcards);
 		ResponseEntity<Void> response = restTemplate
@@ -284,9 +472,9 @@ public class CashcardApplicationTests {
 
 	@Test
 	public void shouldNotUpdateNotExistCashCard(){
-		List<CashCardBulkUpdateDTO> cashcards = List.of(new CashCardBulkUpdateDTO(999L,1.0),
-				new CashCardBulkUpdateDTO(1009L,2.0),
-				new CashCardBulkUpdateDTO(1029L,3.0)
+		List<CashCardBulkUpdateDTO> cashcards = List.of(new CashCardBulkUpdateDTO(999L, 100L),
+				new CashCardBulkUpdateDTO(1009L, 200L),
+				new CashCardBulkUpdateDTO(1029L, 300L)
 		);
 		HttpEntity<List<CashCardBulkUpdateDTO>> request = new HttpEntity<>(cashcards);
 		ResponseEntity<Void> response = restTemplate
@@ -295,6 +483,56 @@ public class CashcardApplicationTests {
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
 	}
 
+	@Test
+	public void shouldRejectInvalidOrMalformedBulkBodiesWithoutApplyingAnything(){
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		ResponseEntity<String> invalid = restTemplate.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/bulk", HttpMethod.PUT,
+						new HttpEntity<>("[{\"id\":99,\"amount\":1.00},{\"id\":100,\"amount\":-1}]", headers), String.class);
+		assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(JsonPath.parse(invalid.getBody()).read("$.error", String.class))
+				.isEqualTo("Amount must be positive (element 1)");
+
+		ResponseEntity<String> malformed = restTemplate.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/bulk", HttpMethod.DELETE, new HttpEntity<>("[99, 100", headers), String.class);
+		assertThat(malformed.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		ResponseEntity<String> empty = restTemplate.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/bulk", HttpMethod.DELETE, new HttpEntity<>("[]", headers), String.class);
+		assertThat(empty.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		ResponseEntity<String> getResponse = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(JsonPath.parse(getResponse.getBody()).read("$.amount", Double.class)).isEqualTo(123.45);
+		assertThat(restTemplate.withBasicAuth("sarah1", "abc123").getForEntity("/cashcards/100", String.class)
+				.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	public void shouldReturnAnalyticsOfAllCashCardsToAdminsOnly(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/analytics?buckets=2&top=1", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		assertThat(documentContext.read("$.count", Integer.class)).isEqualTo(4);
+		assertThat(documentContext.read("$.sum", Double.class)).isEqualTo(474.45);
+		assertThat(documentContext.read("$.min", Double.class)).isEqualTo(1.00);
+		assertThat(documentContext.read("$.max", Double.class)).isEqualTo(200.00);
+		assertThat(documentContext.read("$.histogram.length()", Integer.class)).isEqualTo(2);
+		assertThat(documentContext.read("$.histogram[0].count", Integer.class)).isEqualTo(1);
+		assertThat(documentContext.read("$.histogram[1].count", Integer.class)).isEqualTo(3);
+		assertThat(documentContext.read("$.histogram[1].to", Double.class)).isEqualTo(200.00);
+		assertThat(documentContext.read("$.percentiles[0].percentile", Integer.class)).isEqualTo(50);
+		assertThat(documentContext.read("$.topOwners.length()", Integer.class)).isEqualTo(1);
+		assertThat(documentContext.read("$.topOwners[0].owner", String.class)).isEqualTo("sarah1");
+		assertThat(documentContext.read("$.topOwners[0].balance", Double.class)).isEqualTo(274.45);
+
+		ResponseEntity<String> notAdmin = restTemplate.withBasicAuth("kumar2", "xyz789")
+				.getForEntity("/cashcards/analytics", String.class);
+		assertThat(notAdmin.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+	}
+
 	@Test
 	public void shouldDeleteAllRequestedCashCards(){
 		HttpEntity<List<Long>> request = new HttpEntity<>(List.of(99L,100L));
@@ -399,5 +637,419 @@ public class CashcardApplicationTests {
 
 	}
 
+	@Test
+	public void shouldScrollThroughFilteredCashCardsWithACursor(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/filter?min=1&max=260&after=&size=3",String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray amounts = documentContext.read("$.content[*].amount");
+		assertThat(amounts).containsExactly(200.0,150.0,123.45);
+		String next = documentContext.read("$.next");
+		assertThat(next).isNotBlank();
+
+		ResponseEntity<String> nextResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/filter?min=1&max=260&after={after}&size=3",String.class, next);
+		DocumentContext nextDocumentContext = JsonPath.parse(nextResponse.getBody());
+		JSONArray ids = nextDocumentContext.read("$.content[*].id");
+		assertThat(ids).containsExactly(100);
+		String last = nextDocumentContext.read("$.next");
+		assertThat(last).isNull();
+		assertThat(nextResponse.getHeaders().containsKey("X-Approximate-Count")).isFalse();
+	}
+
+	@Test
+	public void shouldRejectAnInvalidFilterCursor(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/filter?min=1&max=260&after=not-a-cursor",String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		ResponseEntity<String> forbidden = restTemplate.withBasicAuth("kumar2","xyz789")
+				.getForEntity("/cashcards/filter?min=1&max=260&after=",String.class);
+		assertThat(forbidden.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+	}
+
+	@Test
+	public void shouldReturnAnApproximateCountOfFilteredCashCards(){
+		amountHistogram.refresh();
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/filter?min=0&max=1000&approximateCount=true",String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getFirst("X-Approximate-Count")).isEqualTo("4");
+
+		ResponseEntity<String> scrollResponse = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/filter?min=0&max=1000&after=&size=1&approximateCount=true",String.class);
+		assertThat(scrollResponse.getHeaders().getFirst("X-Approximate-Count")).isEqualTo("4");
+
+		ResponseEntity<String> emptyRange = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/filter?min=500&max=1000&approximateCount=true",String.class);
+		assertThat(emptyRange.getHeaders().getFirst("X-Approximate-Count")).isEqualTo("0");
+	}
+
+	private DocumentContext summaryOf(String username, String password){
+		ResponseEntity<String> response = restTemplate.withBasicAuth(username, password)
+				.getForEntity("/cashcards/summary", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		return JsonPath.parse(response.getBody());
+	}
+
+	@Test
+	public void shouldSummarizeTheCashCardsOfTheOwner(){
+		DocumentContext summary = summaryOf("sarah1", "abc123");
+		assertThat(summary.read("$.count", Integer.class)).isEqualTo(3);
+		assertThat(summary.read("$.sum", Double.class)).isEqualTo(274.45);
+		assertThat(summary.read("$.min", Double.class)).isEqualTo(1.00);
+		assertThat(summary.read("$.max", Double.class)).isEqualTo(150.00);
+
+		DocumentContext empty = summaryOf("xin", "xin"); // owns no cards
+		assertThat(empty.read("$.count", Integer.class)).isZero();
+		assertThat(empty.read("$.sum", Double.class)).isZero();
+		assertThat(empty.read("$.min", Double.class)).isNull();
+		assertThat(empty.read("$.max", Double.class)).isNull();
+	}
+
+	@Test
+	public void shouldKeepTheSummaryUpToDateOnEveryChange(){
+		restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards", new CashCardRequestDTO(50000L), Void.class);
+		DocumentContext created = summaryOf("sarah1", "abc123");
+		assertThat(created.read("$.count", Integer.class)).isEqualTo(4);
+		assertThat(created.read("$.sum", Double.class)).isEqualTo(774.45);
+		assertThat(created.read("$.max", Double.class)).isEqualTo(500.00);
+
+		// raise the minimum card, the next lowest one becomes the min
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/100", HttpMethod.PUT,
+				new HttpEntity<>(new CashCardRequestDTO(1000L)), Void.class);
+		DocumentContext updated = summaryOf("sarah1", "abc123");
+		assertThat(updated.read("$.sum", Double.class)).isEqualTo(783.45);
+		assertThat(updated.read("$.min", Double.class)).isEqualTo(10.00);
+
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk", HttpMethod.PUT,
+				new HttpEntity<>(List.of(new CashCardBulkUpdateDTO(99L, 500L), new CashCardBulkUpdateDTO(101L, 60000L))), Void.class);
+		DocumentContext bulkUpdated = summaryOf("sarah1", "abc123");
+		assertThat(bulkUpdated.read("$.count", Integer.class)).isEqualTo(4);
+		assertThat(bulkUpdated.read("$.sum", Double.class)).isEqualTo(1115.00);
+		assertThat(bulkUpdated.read("$.min", Double.class)).isEqualTo(5.00);
+		assertThat(bulkUpdated.read("$.max", Double.class)).isEqualTo(600.00);
+
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/101", HttpMethod.DELETE, null, Void.class);
+		DocumentContext deleted = summaryOf("sarah1", "abc123");
+		assertThat(deleted.read("$.count", Integer.class)).isEqualTo(3);
+		assertThat(deleted.read("$.sum", Double.class)).isEqualTo(515.00);
+		assertThat(deleted.read("$.max", Double.class)).isEqualTo(500.00);
+
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk", HttpMethod.DELETE,
+				new HttpEntity<>(List.of(99L, 100L)), Void.class);
+		DocumentContext bulkDeleted = summaryOf("sarah1", "abc123");
+		assertThat(bulkDeleted.read("$.count", Integer.class)).isEqualTo(1);
+		assertThat(bulkDeleted.read("$.sum", Double.class)).isEqualTo(500.00);
+		assertThat(bulkDeleted.read("$.min", Double.class)).isEqualTo(500.00);
+		assertThat(bulkDeleted.read("$.max", Double.class)).isEqualTo(500.00);
+
+		// a rejected bulk change leaves the summary untouched
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk", HttpMethod.DELETE,
+				new HttpEntity<>(List.of(102L)), Void.class);
+		assertThat(summaryOf("sarah1", "abc123").read("$.count", Integer.class)).isEqualTo(1);
+		assertThat(summaryOf("kumar2", "xyz789").read("$.sum", Double.class)).isEqualTo(200.00);
+	}
+
+	@Test
+	public void shouldTransferAnAmountBetweenTwoCashCards(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/transfers", new CashCardTransferDTO(99L, 100L, 5000L), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		assertThat(documentContext.read("$[0].id", Integer.class)).isEqualTo(99);
+		assertThat(documentContext.read("$[0].amount", Double.class)).isEqualTo(73.45);
+		assertThat(documentContext.read("$[1].id", Integer.class)).isEqualTo(100);
+		assertThat(documentContext.read("$[1].amount", Double.class)).isEqualTo(51.00);
+
+		ResponseEntity<String> target = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/100", String.class);
+		assertThat(JsonPath.parse(target.getBody()).read("$.amount", Double.class)).isEqualTo(51.00);
+		DocumentContext summary = summaryOf("sarah1", "abc123");
+		assertThat(summary.read("$.sum", Double.class)).isEqualTo(274.45);
+		assertThat(summary.read("$.min", Double.class)).isEqualTo(51.00);
+	}
+
+	@Test
+	public void shouldNotTransferMoreThanTheSourceHolds(){
+		// a card cannot be left at 0
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/transfers", new CashCardTransferDTO(100L, 99L, 100L), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(JsonPath.parse(response.getBody()).read("$.error", String.class)).contains("Insufficient");
+
+		ResponseEntity<String> source = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/100", String.class);
+		assertThat(JsonPath.parse(source.getBody()).read("$.amount", Double.class)).isEqualTo(1.00);
+		ResponseEntity<String> target = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(JsonPath.parse(target.getBody()).read("$.amount", Double.class)).isEqualTo(123.45);
+	}
+
+	@Test
+	public void shouldNotTransferToACashCardNotOwned(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/transfers", new CashCardTransferDTO(99L, 102L, 100L), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		ResponseEntity<String> source = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(JsonPath.parse(source.getBody()).read("$.amount", Double.class)).isEqualTo(123.45);
+	}
+
+	@Test
+	public void shouldRejectAnInvalidTransfer(){
+		ResponseEntity<String> sameCard = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/transfers", new CashCardTransferDTO(99L, 99L, 100L), String.class);
+		assertThat(sameCard.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		ResponseEntity<String> negative = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards/transfers", new CashCardTransferDTO(99L, 100L, -100L), String.class);
+		assertThat(negative.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void shouldCreateACashCardOnceForAnIdempotencyKey(){
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Idempotency-Key", "create-1");
+		ResponseEntity<Void> first = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards", new HttpEntity<>(new CashCardRequestDTO(25000L), headers), Void.class);
+		assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(first.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+
+		ResponseEntity<Void> retry = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards", new HttpEntity<>(new CashCardRequestDTO(25000L), headers), Void.class);
+		assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(retry.getHeaders().getLocation()).isEqualTo(first.getHeaders().getLocation());
+		assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+		assertThat(summaryOf("sarah1", "abc123").read("$.count", Integer.class)).isEqualTo(4);
+
+		ResponseEntity<String> reused = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/cashcards", new HttpEntity<>(new CashCardRequestDTO(100L), headers), String.class);
+		assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+		assertThat(summaryOf("sarah1", "abc123").read("$.count", Integer.class)).isEqualTo(4);
+	}
 
+	@Test
+	public void shouldNotReapplyABulkUpdateRetriedWithTheSameIdempotencyKey(){
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Idempotency-Key", "bulk-1");
+		List<CashCardBulkUpdateDTO> updates = List.of(new CashCardBulkUpdateDTO(99L, 500L));
+		ResponseEntity<Void> first = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk",
+				HttpMethod.PUT, new HttpEntity<>(updates, headers), Void.class);
+		assertThat(first.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99", HttpMethod.PUT,
+				new HttpEntity<>(new CashCardRequestDTO(700L)), Void.class);
+		ResponseEntity<Void> retry = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk",
+				HttpMethod.PUT, new HttpEntity<>(updates, headers), Void.class);
+		assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+		assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+
+		ResponseEntity<String> card = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(JsonPath.parse(card.getBody()).read("$.amount", Double.class)).isEqualTo(7.00);
+	}
+
+	private DocumentContext awaitJob(URI location) throws InterruptedException {
+		for (int attempt = 0; attempt < 100; attempt++) {
+			ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+					.getForEntity(location, String.class);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+			DocumentContext job = JsonPath.parse(response.getBody());
+			String status = job.read("$.status");
+			if (!status.equals("QUEUED") && !status.equals("RUNNING")) {
+				return job;
+			}
+			Thread.sleep(100);
+		}
+		throw new AssertionError("job " + location + " did not finish");
+	}
+
+	@Test
+	public void shouldRunABulkUpdateAsABackgroundJob() throws InterruptedException {
+		List<CashCardBulkUpdateDTO> updates = List.of(new CashCardBulkUpdateDTO(99L, 500L), new CashCardBulkUpdateDTO(101L, 600L));
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk?async=true",
+				HttpMethod.PUT, new HttpEntity<>(updates), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+		URI location = response.getHeaders().getLocation();
+		assertThat(location.getPath()).startsWith("/cashcards/jobs/");
+		assertThat(JsonPath.parse(response.getBody()).read("$.total", Integer.class)).isEqualTo(2);
+
+		DocumentContext job = awaitJob(location);
+		assertThat(job.read("$.status", String.class)).isEqualTo("SUCCEEDED");
+		assertThat(job.read("$.processed", Integer.class)).isEqualTo(2);
+		ResponseEntity<String> card = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/101", String.class);
+		assertThat(JsonPath.parse(card.getBody()).read("$.amount", Double.class)).isEqualTo(6.00);
+
+		// jobs are only visible to their owner
+		assertThat(restTemplate.withBasicAuth("kumar2","xyz789").getForEntity(location, String.class).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	public void shouldFailABackgroundBulkDeleteWithoutDeletingWhenACardIsNotOwned() throws InterruptedException {
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk?async=true",
+				HttpMethod.DELETE, new HttpEntity<>(List.of(99L, 102L)), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+
+		DocumentContext job = awaitJob(response.getHeaders().getLocation());
+		assertThat(job.read("$.status", String.class)).isEqualTo("FAILED");
+		assertThat(job.read("$.processed", Integer.class)).isZero();
+		assertThat(restTemplate.withBasicAuth("sarah1","abc123").getForEntity("/cashcards/99", String.class).getStatusCode())
+				.isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	public void shouldRejectAnInvalidBackgroundBulkUpdateBeforeQueueingIt() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk?async=true",
+				HttpMethod.PUT, new HttpEntity<>("[{\"id\": 99, \"amount\": 5.00}, {\"id\": 101}]", headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(JsonPath.parse(response.getBody()).read("$.error", String.class)).contains("element 1");
+
+		ResponseEntity<String> empty = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/bulk?async=true",
+				HttpMethod.DELETE, new HttpEntity<>("[]", headers), String.class);
+		assertThat(empty.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	private HttpHeaders conditional(String header, String eTag){
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(header, eTag);
+		return headers;
+	}
+
+	@Test
+	public void shouldAnswerNotModifiedWhileTheETagStillMatches(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		String eTag = response.getHeaders().getETag();
+		assertThat(eTag).isNotBlank();
+
+		ResponseEntity<String> notModified = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99",
+				HttpMethod.GET, new HttpEntity<>(conditional(HttpHeaders.IF_NONE_MATCH, eTag)), String.class);
+		assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(notModified.getBody()).isNull();
+		assertThat(notModified.getHeaders().getETag()).isEqualTo(eTag);
+
+		restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99", HttpMethod.PUT,
+				new HttpEntity<>(new CashCardRequestDTO(100L)), Void.class);
+		ResponseEntity<String> modified = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99",
+				HttpMethod.GET, new HttpEntity<>(conditional(HttpHeaders.IF_NONE_MATCH, eTag)), String.class);
+		assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+		assertThat(JsonPath.parse(modified.getBody()).read("$.amount", Double.class)).isEqualTo(1.00);
+		// the next read is served by the cache and keeps the version
+		ResponseEntity<String> cached = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(cached.getHeaders().getETag()).isEqualTo(modified.getHeaders().getETag());
+	}
+
+	@Test
+	public void shouldOnlyUpdateACashCardWhoseETagMatchesIfMatch(){
+		String eTag = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class).getHeaders().getETag();
+
+		HttpHeaders headers = conditional(HttpHeaders.IF_MATCH, eTag);
+		ResponseEntity<Void> first = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99",
+				HttpMethod.PUT, new HttpEntity<>(new CashCardRequestDTO(2000L), headers), Void.class);
+		assertThat(first.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+		String newETag = first.getHeaders().getETag();
+		assertThat(newETag).isNotEqualTo(eTag);
+
+		// a second writer holding the old ETag does not overwrite the first one
+		ResponseEntity<String> stale = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99",
+				HttpMethod.PUT, new HttpEntity<>(new CashCardRequestDTO(3000L), headers), String.class);
+		assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+		ResponseEntity<String> current = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(JsonPath.parse(current.getBody()).read("$.amount", Double.class)).isEqualTo(20.00);
+		assertThat(current.getHeaders().getETag()).isEqualTo(newETag);
+
+		ResponseEntity<Void> weak = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99",
+				HttpMethod.PUT, new HttpEntity<>(new CashCardRequestDTO(3000L), conditional(HttpHeaders.IF_MATCH, "W/" + newETag)), Void.class);
+		assertThat(weak.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+		ResponseEntity<Void> any = restTemplate.withBasicAuth("sarah1","abc123").exchange("/cashcards/99",
+				HttpMethod.PUT, new HttpEntity<>(new CashCardRequestDTO(3000L), conditional(HttpHeaders.IF_MATCH, "*")), Void.class);
+		assertThat(any.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+	}
+
+	@Test
+	public void shouldNotAuthenticateWithAWrongPasswordAfterASuccessfulLogin(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<String> wrongPassword = restTemplate.withBasicAuth("sarah1","abc124")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(wrongPassword.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	public void shouldForgetCachedLoginsWhenAUserChanges(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		userDetailsManager.updateUser(User.withUserDetails(userDetailsManager.loadUserByUsername("sarah1"))
+				.password(passwordEncoder.encode("new-password"))
+				.build());
+
+		ResponseEntity<String> oldPassword = restTemplate.withBasicAuth("sarah1","abc123")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(oldPassword.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+		ResponseEntity<String> newPassword = restTemplate.withBasicAuth("sarah1","new-password")
+				.getForEntity("/cashcards/99", String.class);
+		assertThat(newPassword.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	private ResponseEntity<String> getWithBearer(String url, String token){
+		HttpHeaders headers = new HttpHeaders();
+		headers.setBearerAuth(token);
+		return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	@Test
+	public void shouldAuthenticateWithAnIssuedBearerToken(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("kumar2","xyz789")
+				.postForEntity("/auth/token", null, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		String token = documentContext.read("$.token");
+		Number expiresIn = documentContext.read("$.expiresIn");
+		assertThat(token).isNotBlank();
+		assertThat(expiresIn.longValue()).isPositive();
+
+		ResponseEntity<String> card = getWithBearer("/cashcards/102", token);
+		assertThat(card.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(JsonPath.parse(card.getBody()).read("$.amount", Double.class)).isEqualTo(200.00);
+		// the token carries kumar2's roles and ownership
+		assertThat(getWithBearer("/cashcards/99", token).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(getWithBearer("/cashcards/filter?min=1&max=2", token).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+
+		assertThat(getWithBearer("/cashcards/102", "not-a-token").getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+
+		userDetailsManager.deleteUser("kumar2");
+		assertThat(getWithBearer("/cashcards/102", token).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	public void shouldNotRenewABearerTokenWithItself(){
+		ResponseEntity<String> response = restTemplate.withBasicAuth("sarah1","abc123")
+				.postForEntity("/auth/token", null, String.class);
+		String token = JsonPath.parse(response.getBody()).read("$.token");
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setBearerAuth(token);
+		ResponseEntity<String> renewed = restTemplate.exchange("/auth/token", HttpMethod.POST, new HttpEntity<>(headers), String.class);
+		assertThat(renewed.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+		// the token itself still works
+		assertThat(getWithBearer("/cashcards/99", token).getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
 }
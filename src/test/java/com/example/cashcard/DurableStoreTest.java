@@ -0,0 +1,53 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.service.CashCardService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the durable profile twice on the same database file. The test data.sql starts by
+ * deleting every card, so a card created before the restart is only there after it if the
+ * scripts were not run again.
+ */
+public class DurableStoreTest {
+
+	@TempDir
+	Path directory;
+
+	private ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(CashcardApplication.class).run(
+				"--spring.profiles.active=durable",
+				"--server.port=0",
+				"--cashcard.durable.path=" + directory.resolve("cashcard"));
+	}
+
+	@Test
+	public void cardsShouldSurviveARestartWithoutReplayingTheScripts() {
+		long created;
+		try (ConfigurableApplicationContext context = start()) {
+			assertThat(context.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM cash_card", Integer.class))
+					.isEqualTo(4);
+			created = context.getBean(CashCardService.class).createCashCard(new CashCardRequestDTO(4200L), "sarah1").getId();
+		}
+
+		try (ConfigurableApplicationContext context = start()) {
+			JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+			assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cash_card", Integer.class)).isEqualTo(5);
+			assertThat(jdbcTemplate.queryForObject("SELECT amount FROM cash_card WHERE id = ?", Long.class, created))
+					.isEqualTo(4200);
+			assertThat(jdbcTemplate.queryForObject("SELECT card_count FROM owner_summary WHERE owner = 'sarah1'", Long.class))
+					.isEqualTo(4);
+			// the sequence kept its position, the next card does not reuse an id
+			long next = context.getBean(CashCardService.class).createCashCard(new CashCardRequestDTO(100L), "sarah1").getId();
+			assertThat(next).isGreaterThan(created);
+		}
+	}
+}
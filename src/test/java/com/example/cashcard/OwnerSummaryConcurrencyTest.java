@@ -0,0 +1,81 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.service.CashCardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The first cards of a new owner created by concurrent requests, which both find no summary row
+ * and try to insert it.
+ */
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class OwnerSummaryConcurrencyTest {
+
+	private static final String OWNER = "new-owner";
+
+	@Autowired
+	CashCardService cashCardService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	public void shouldCreateTheFirstCardsOfANewOwnerConcurrently() throws InterruptedException {
+		CountDownLatch inserted = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		// the first request inserts the summary row and keeps its transaction open
+		Thread first = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			cashCardService.createCashCard(new CashCardRequestDTO(100L), OWNER);
+			inserted.countDown();
+			await(commit);
+		}));
+		first.setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+		first.start();
+		assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+
+		// the second one does not see the row yet and waits on its primary key
+		Thread second = new Thread(() -> cashCardService.createCashCard(new CashCardRequestDTO(200L), OWNER));
+		second.setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+		second.start();
+		Thread.sleep(200);
+		commit.countDown();
+		first.join();
+		second.join();
+
+		assertThat(failure.get()).isNull();
+		Map<String, Object> summary = jdbcTemplate.queryForMap(
+				"SELECT card_count, total_amount, min_amount, max_amount FROM owner_summary WHERE owner = ?", OWNER);
+		assertThat(summary).containsEntry("CARD_COUNT", 2L)
+				.containsEntry("TOTAL_AMOUNT", 300L)
+				.containsEntry("MIN_AMOUNT", 100L)
+				.containsEntry("MAX_AMOUNT", 200L);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
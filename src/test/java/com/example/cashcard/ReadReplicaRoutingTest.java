@@ -0,0 +1,91 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and the replica. Nothing replicates
+ * between them, and the amounts of the replica are 0.01 higher, so every read tells which
+ * database served it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"cashcard.datasource.replica.jdbc-url=" + ReadReplicaRoutingTest.REPLICA_URL,
+		"cashcard.datasource.read-your-writes.window=2s"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReadReplicaRoutingTest {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:replica-routing-test;DB_CLOSE_DELAY=-1";
+
+	static {
+		DriverManagerDataSource replica = new DriverManagerDataSource(REPLICA_URL);
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql")).execute(replica);
+		new JdbcTemplate(replica).update("UPDATE cash_card SET amount = amount + 1");
+	}
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	private List<Double> amounts(String username, String password) {
+		ResponseEntity<String> response = restTemplate.withBasicAuth(username, password)
+				.getForEntity("/cashcards?sort=id", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		return documentContext.read("$[*].amount");
+	}
+
+	@Test
+	public void readsShouldGoToTheReplicaExceptRightAfterTheUsersOwnWrite() throws InterruptedException {
+		assertThat(amounts("sarah1", "abc123")).containsExactly(123.46, 1.01, 150.01);
+
+		ResponseEntity<Void> update = restTemplate.withBasicAuth("sarah1", "abc123")
+				.exchange("/cashcards/100", HttpMethod.PUT, new HttpEntity<>(new CashCardRequestDTO(500L)), Void.class);
+		assertThat(update.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+		assertThat(jdbcTemplate.queryForObject("SELECT amount FROM cash_card WHERE id = 100", Long.class)).isEqualTo(500);
+
+		// sarah1 reads her write back from the primary, kumar2 still reads from the replica
+		assertThat(amounts("sarah1", "abc123")).containsExactly(123.45, 5.00, 150.00);
+		assertThat(amounts("kumar2", "xyz789")).containsExactly(200.01);
+
+		Thread.sleep(2500);
+		assertThat(amounts("sarah1", "abc123")).containsExactly(123.46, 1.01, 150.01);
+	}
+
+	@Test
+	public void aRejectedWriteShouldNotMakeTheUserSticky() {
+		ResponseEntity<Void> rejected = restTemplate.withBasicAuth("kumar2", "xyz789").exchange("/cashcards/bulk",
+				HttpMethod.DELETE, new HttpEntity<>(List.of(102L, 99L)), Void.class);
+		assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		assertThat(amounts("kumar2", "xyz789")).containsExactly(200.01);
+	}
+
+	@Test
+	public void adminRangeQueriesShouldGoToTheReplica() {
+		ResponseEntity<String> response = restTemplate.withBasicAuth("xin", "xin")
+				.getForEntity("/cashcards/filter?min=1&max=260", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		List<Double> amounts = JsonPath.parse(response.getBody()).read("$[*].amount");
+		assertThat(amounts).containsExactly(200.01, 150.01, 123.46, 1.01);
+	}
+}
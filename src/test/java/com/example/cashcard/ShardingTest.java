@@ -0,0 +1,173 @@
+package com.example.cashcard;
+
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.outbox.OutboxRelay;
+import com.example.cashcard.service.CashCardAnalytics;
+import com.example.cashcard.service.CashCardService;
+import com.example.cashcard.sharding.ShardRoutingDataSource;
+import com.example.cashcard.sharding.Shards;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Three in-memory H2 databases stand in for the shards. They start empty: the cards are created
+ * for 30 owners, which the ring spreads over the three shards, and each shard is then read on its
+ * own to check where the rows went.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"cashcard.sharding.urls=jdbc:h2:mem:sharding-test-0,jdbc:h2:mem:sharding-test-1,jdbc:h2:mem:sharding-test-2",
+		"cashcard.outbox.relay-interval=PT1H"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ShardingTest {
+
+	private static final int OWNERS = 30;
+
+	private record Card(long id, long amount, String owner) {}
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	CashCardService cashCardService;
+
+	@Autowired
+	CashCardAnalytics cashCardAnalytics;
+
+	@Autowired
+	OutboxRelay outboxRelay;
+
+	@Autowired
+	Shards shards;
+
+	@Autowired
+	ShardRoutingDataSource shardRoutingDataSource;
+
+	@BeforeEach
+	public void seed() {
+		for (int i = 0; i < OWNERS; i++) {
+			String owner = "owner-" + i;
+			// 1.00 to 11.00, many cards share an amount
+			for (long amount : new long[]{(i * 37 % 11 + 1) * 100, (i % 3 + 1) * 100}) {
+				shards.onShardOf(owner, () -> cashCardService.createCashCard(new CashCardRequestDTO(amount), owner));
+			}
+		}
+	}
+
+	private List<Card> cardsOfShard(int shard) {
+		DataSource dataSource = (DataSource) shardRoutingDataSource.getResolvedDataSources().get(shard);
+		return new JdbcTemplate(dataSource).query("SELECT id, amount, owner FROM cash_card",
+				(rs, rowNum) -> new Card(rs.getLong(1), rs.getLong(2), rs.getString(3)));
+	}
+
+	private List<Card> allCards() {
+		List<Card> cards = new ArrayList<>();
+		for (int shard = 0; shard < shards.count(); shard++) {
+			cards.addAll(cardsOfShard(shard));
+		}
+		cards.sort(Comparator.comparingLong(Card::amount).reversed().thenComparingLong(Card::id));
+		return cards;
+	}
+
+	// ids of shards 1 and 2 are above 2^40, JsonPath reads them as Long and the others as Integer
+	private static List<Long> ids(DocumentContext documentContext, String path) {
+		List<Number> ids = documentContext.read(path);
+		return ids.stream().map(Number::longValue).toList();
+	}
+
+	@Test
+	public void everyOwnerShouldBeKeptOnItsOwnShard() {
+		assertThat(shards.count()).isEqualTo(3);
+		Set<Long> ids = new HashSet<>();
+		for (int shard = 0; shard < shards.count(); shard++) {
+			List<Card> cards = cardsOfShard(shard);
+			assertThat(cards).isNotEmpty();
+			for (Card card : cards) {
+				assertThat(shards.shardOf(card.owner())).isEqualTo(shard);
+				assertThat(ids.add(card.id())).isTrue();
+			}
+		}
+		assertThat(ids).hasSize(2 * OWNERS);
+
+		URI location = restTemplate.withBasicAuth("sarah1", "abc123")
+				.postForLocation("/cashcards", new CashCardRequestDTO(4200L));
+		assertThat(cardsOfShard(shards.shardOf("sarah1"))).anyMatch(card -> card.owner().equals("sarah1"));
+		ResponseEntity<String> card = restTemplate.withBasicAuth("sarah1", "abc123").getForEntity(location, String.class);
+		assertThat(card.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(JsonPath.parse(card.getBody()).read("$.amount", Double.class)).isEqualTo(42.00);
+
+		// the export runs on an executor thread, bound to the shard of the request
+		ResponseEntity<String> export = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/export", String.class);
+		assertThat(export.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(export.getBody()).contains("\"amount\":42.00");
+
+		outboxRelay.relay();
+		DocumentContext changes = JsonPath.parse(restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/changes?since=0", String.class).getBody());
+		List<String> types = changes.read("$.changes[*].type");
+		assertThat(types).containsExactly("CREATED");
+	}
+
+	@Test
+	public void adminFilterShouldMergeTheShardsInOrder() {
+		List<Long> expected = allCards().stream()
+				.filter(card -> card.amount() >= 200 && card.amount() <= 1000)
+				.map(Card::id)
+				.toList();
+
+		ResponseEntity<String> page = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/filter?min=2&max=10&page=1&size=7", String.class);
+		assertThat(page.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(ids(JsonPath.parse(page.getBody()), "$[*].id")).isEqualTo(expected.subList(7, 14));
+
+		List<Long> scrolled = new ArrayList<>();
+		String after = "";
+		do {
+			ResponseEntity<String> window = restTemplate.withBasicAuth("sarah1", "abc123")
+					.getForEntity("/cashcards/filter?min=2&max=10&size=8&after=" + after, String.class);
+			assertThat(window.getStatusCode()).isEqualTo(HttpStatus.OK);
+			DocumentContext documentContext = JsonPath.parse(window.getBody());
+			scrolled.addAll(ids(documentContext, "$.content[*].id"));
+			after = documentContext.read("$.next", String.class);
+		} while (after != null);
+		assertThat(scrolled).isEqualTo(expected);
+	}
+
+	@Test
+	public void adminFilterShouldRejectASortOrPageItCannotMerge() {
+		ResponseEntity<String> unknownSort = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/filter?min=2&max=10&sort=color", String.class);
+		assertThat(unknownSort.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		ResponseEntity<String> pastTheEnd = restTemplate.withBasicAuth("sarah1", "abc123")
+				.getForEntity("/cashcards/filter?min=2&max=10&page=2147483647&size=20", String.class);
+		assertThat(pastTheEnd.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void analyticsShouldAddUpEveryShard() {
+		List<Card> cards = allCards();
+		assertThat(cashCardAnalytics.analyze(10, 3).getCount()).isEqualTo(cards.size());
+		assertThat(cashCardAnalytics.analyze(10, 3).getSum()).isEqualTo(cards.stream().mapToLong(Card::amount).sum());
+		assertThat(cashCardAnalytics.analyze(10, 3).getTopOwners()).hasSize(3);
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.cashcard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares throughput and p99 latency of GET /cashcards/{id} on Tomcat platform threads and on
+ * virtual threads. It starts the application once per mode, so it only runs on demand:
+ * <pre>
+ * mvn test -Dtest=VirtualThreadLoadTest -Dloadtest=true [-Dloadtest.requests=20000] [-Dloadtest.concurrency=400]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class VirtualThreadLoadTest {
+
+	private static final int REQUESTS = Integer.getInteger("loadtest.requests", 20_000);
+	private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 400);
+	private static final String AUTHORIZATION = "Basic " + Base64.getEncoder()
+			.encodeToString("sarah1:abc123".getBytes(StandardCharsets.UTF_8));
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+	private record Result(String mode, double throughput, double p50Millis, double p99Millis, int errors) {
+		@Override
+		public String toString() {
+			return String.format("%-9s throughput %8.1f req/s   p50 %7.2f ms   p99 %7.2f ms   errors %d",
+					mode, throughput, p50Millis, p99Millis, errors);
+		}
+	}
+
+	@Test
+	public void comparePlatformAndVirtualThreads() throws Exception {
+		Result platform = run("platform", false);
+		Result virtual = run("virtual", true);
+
+		log.info("GET /cashcards/{id}, {} requests, {} concurrent clients", REQUESTS, CONCURRENCY);
+		log.info("{}", platform);
+		log.info("{}", virtual);
+		assertThat(platform.errors()).isZero();
+		assertThat(virtual.errors()).isZero();
+	}
+
+	private Result run(String mode, boolean virtualThreads) throws Exception {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CashcardApplication.class)
+				.profiles(virtualThreads ? "virtual-threads" : "default")
+				.run("--server.port=0",
+						"--spring.datasource.url=jdbc:h2:mem:load-" + mode,
+						"--logging.level.org.springframework.security=INFO",
+						"--logging.level.com.example.cashcard=WARN",
+						"--logging.level.com.example.cashcard.VirtualThreadLoadTest=INFO")) {
+			int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+			HttpClient client = HttpClient.newBuilder()
+					.executor(Executors.newVirtualThreadPerTaskExecutor())
+					.connectTimeout(Duration.ofSeconds(10))
+					.build();
+			HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/99"))
+					.header("Authorization", AUTHORIZATION)
+					.GET()
+					.build();
+
+			// warm up the JIT, the connection pool and the caches
+			fire(client, request, Math.min(REQUESTS / 10, 2_000));
+			long start = System.nanoTime();
+			long[] latencies = new long[REQUESTS];
+			int errors = fire(client, request, latencies);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			Arrays.sort(latencies);
+			return new Result(mode, REQUESTS / seconds,
+					latencies[(int) (REQUESTS * 0.50)] / 1e6,
+					latencies[Math.min(REQUESTS - 1, (int) (REQUESTS * 0.99))] / 1e6,
+					errors);
+		}
+	}
+
+	private int fire(HttpClient client, HttpRequest request, int count) throws Exception {
+		return fire(client, request, new long[count]);
+	}
+
+	private int fire(HttpClient client, HttpRequest request, long[] latencies) throws Exception {
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> futures = new ArrayList<>(CONCURRENCY);
+			for (int c = 0; c < CONCURRENCY; c++) {
+				futures.add(clients.submit(() -> {
+					int i;
+					while ((i = next.getAndIncrement()) < latencies.length) {
+						long begin = System.nanoTime();
+						try {
+							HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+							if (response.statusCode() != 200) {
+								errors.incrementAndGet();
+							}
+						} catch (Exception e) {
+							errors.incrementAndGet();
+						}
+						latencies[i] = System.nanoTime() - begin;
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		return errors.get();
+	}
+}
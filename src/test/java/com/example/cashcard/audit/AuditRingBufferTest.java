@@ -0,0 +1,77 @@
+package com.example.cashcard.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditRingBufferTest {
+
+	@Test
+	public void shouldRoundCapacityUpToAPowerOfTwo() {
+		assertThat(new AuditRingBuffer<Integer>(1000).capacity()).isEqualTo(1024);
+		assertThat(new AuditRingBuffer<Integer>(1024).capacity()).isEqualTo(1024);
+	}
+
+	@Test
+	public void shouldRejectElementsWhenFullAndAcceptThemAgainAfterADrain() {
+		AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+		for (int i = 0; i < 4; i++) {
+			assertThat(buffer.offer(i)).isTrue();
+		}
+		assertThat(buffer.offer(4)).isFalse();
+
+		List<Integer> batch = new ArrayList<>();
+		assertThat(buffer.drainTo(batch, 2)).isEqualTo(2);
+		assertThat(batch).containsExactly(0, 1);
+		assertThat(buffer.offer(5)).isTrue();
+		assertThat(buffer.offer(6)).isTrue();
+		assertThat(buffer.offer(7)).isFalse();
+
+		batch.clear();
+		assertThat(buffer.drainTo(batch, 10)).isEqualTo(4);
+		assertThat(batch).containsExactly(2, 3, 5, 6);
+		assertThat(buffer.size()).isZero();
+	}
+
+	@Test
+	public void shouldNotLoseOrDuplicateElementsWithConcurrentProducers() throws Exception {
+		int producers = 4;
+		int perProducer = 50_000;
+		AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(256);
+		CountDownLatch done = new CountDownLatch(producers);
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		for (int p = 0; p < producers; p++) {
+			int base = p * perProducer;
+			executor.submit(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					while (!buffer.offer(base + i)) {
+						Thread.onSpinWait();
+					}
+				}
+				done.countDown();
+			});
+		}
+
+		Set<Integer> received = new HashSet<>();
+		List<Integer> batch = new ArrayList<>();
+		while (received.size() < producers * perProducer) {
+			batch.clear();
+			buffer.drainTo(batch, 64);
+			for (Integer element : batch) {
+				assertThat(received.add(element)).isTrue();
+			}
+		}
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		executor.shutdown();
+		assertThat(buffer.size()).isZero();
+	}
+}
@@ -0,0 +1,38 @@
+package com.example.cashcard.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AotConditionsCheckTest {
+
+	@Test
+	public void shouldCaptureTheDefaultsOfAPlainStart() {
+		assertThat(AotConditionsCheck.capture(new MockEnvironment()))
+				.containsEntry("profiles", "")
+				.containsEntry("cashcard.idempotency.store", "memory")
+				.containsEntry("cashcard.sharding.urls", "unset")
+				.containsEntry("cashcard.datasource.replica.jdbc-url", "unset");
+	}
+
+	@Test
+	public void shouldTellABuildForTheDurableProfileFromTheDefaultOne() {
+		MockEnvironment durable = new MockEnvironment().withProperty("cashcard.idempotency.store", "jdbc");
+		durable.setActiveProfiles("durable");
+
+		assertThat(AotConditionsCheck.capture(durable)).isNotEqualTo(AotConditionsCheck.capture(new MockEnvironment()));
+	}
+
+	@Test
+	public void shouldOnlyCompareWhetherTheUrlsAreSet() {
+		MockEnvironment built = new MockEnvironment()
+				.withProperty("cashcard.sharding.urls", "jdbc:h2:mem:a,jdbc:h2:mem:b");
+		built.setActiveProfiles("durable", "cluster");
+		MockEnvironment started = new MockEnvironment()
+				.withProperty("cashcard.sharding.urls", "jdbc:postgresql://db1/cards,jdbc:postgresql://db2/cards");
+		started.setActiveProfiles("cluster", "durable");
+
+		assertThat(AotConditionsCheck.capture(started)).isEqualTo(AotConditionsCheck.capture(built));
+	}
+}
@@ -0,0 +1,45 @@
+package com.example.cashcard.config;
+
+import com.example.cashcard.dto.CashCardAnalyticsDTO;
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.dto.CashCardRequestDTO;
+import com.example.cashcard.dto.CashCardResponseDTO;
+import com.example.cashcard.money.AmountDeserializer;
+import com.example.cashcard.money.AmountSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CashCardRuntimeHintsTest {
+
+	private final RuntimeHints hints = new RuntimeHints();
+
+	public CashCardRuntimeHintsTest() {
+		new CashCardRuntimeHints().registerHints(hints, getClass().getClassLoader());
+	}
+
+	@Test
+	public void shouldLetJacksonBindTheDtos() throws Exception {
+		assertThat(RuntimeHintsPredicates.reflection().onConstructor(CashCardRequestDTO.class.getConstructor()))
+				.accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(CashCardRequestDTO.class, "setAmount")).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(CashCardResponseDTO.class, "getAmount")).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(CashCardAnalyticsDTO.OwnerBalance.class)).accepts(hints);
+	}
+
+	@Test
+	public void shouldLetTheValidatorReadTheConstraints() {
+		assertThat(RuntimeHintsPredicates.reflection().onField(CashCardRequestDTO.class, "amount")).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onField(CashCardBulkUpdateDTO.class, "id")).accepts(hints);
+	}
+
+	@Test
+	public void shouldLetJacksonCreateTheAmountSerializers() throws Exception {
+		assertThat(RuntimeHintsPredicates.reflection().onConstructor(AmountSerializer.class.getConstructor()))
+				.accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onConstructor(AmountDeserializer.class.getConstructor()))
+				.accepts(hints);
+	}
+}
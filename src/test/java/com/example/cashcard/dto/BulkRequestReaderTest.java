@@ -0,0 +1,63 @@
+package com.example.cashcard.dto;
+
+import com.example.cashcard.error.InvalidBulkRequestException;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BulkRequestReaderTest {
+
+	private static BulkRequestReader reader(String json) throws IOException {
+		return new BulkRequestReader(new JsonFactory().createParser(json));
+	}
+
+	@Test
+	public void shouldReadUpdatesInChunksOfTheBufferSize() throws IOException {
+		BulkRequestReader reader = reader("[{\"id\":1,\"amount\":1.5},{\"amount\":\"2\",\"id\":2,\"note\":{\"a\":[1]}},{\"id\":3,\"amount\":0.01}]");
+		long[] ids = new long[2];
+		long[] amounts = new long[2];
+
+		assertThat(reader.readUpdates(ids, amounts)).isEqualTo(2);
+		assertThat(ids).containsExactly(1, 2);
+		assertThat(amounts).containsExactly(150, 200);
+		assertThat(reader.readUpdates(ids, amounts)).isEqualTo(1);
+		assertThat(ids[0]).isEqualTo(3);
+		assertThat(amounts[0]).isEqualTo(1);
+		assertThat(reader.readUpdates(ids, amounts)).isZero();
+	}
+
+	@Test
+	public void shouldReadIdsUntilTheEndOfTheArray() throws IOException {
+		BulkRequestReader reader = reader("[5, 6, 7]");
+		long[] ids = new long[8];
+
+		assertThat(reader.readIds(ids)).isEqualTo(3);
+		assertThat(ids).startsWith(5, 6, 7);
+		assertThat(reader.readIds(ids)).isZero();
+		assertThat(reader("[]").readIds(ids)).isZero();
+	}
+
+	@Test
+	public void shouldRejectInvalidElementsAndMalformedBodies() {
+		long[] ids = new long[4];
+		long[] amounts = new long[4];
+
+		assertThatThrownBy(() -> reader("[{\"id\":1,\"amount\":1},{\"id\":2,\"amount\":-1}]").readUpdates(ids, amounts))
+				.isInstanceOf(InvalidBulkRequestException.class)
+				.hasMessage("Amount must be positive (element 1)");
+		assertThatThrownBy(() -> reader("[{\"amount\":1}]").readUpdates(ids, amounts))
+				.hasMessage("ID cannot be null (element 0)");
+		assertThatThrownBy(() -> reader("[1, \"two\"]").readIds(ids))
+				.hasMessage("ID must be an integer (element 1)");
+		assertThatThrownBy(() -> reader("{\"id\":1}").readIds(ids))
+				.hasMessage("A JSON array is expected");
+		assertThatThrownBy(() -> reader("[1, 2").readIds(ids))
+				.isInstanceOf(InvalidBulkRequestException.class);
+		assertThatThrownBy(() -> reader("[1, 2]]").readIds(ids))
+				.isInstanceOf(InvalidBulkRequestException.class);
+	}
+}
@@ -0,0 +1,149 @@
+package com.example.cashcard.idempotency;
+
+import com.example.cashcard.error.IdempotencyKeyReusedException;
+import com.example.cashcard.sharding.Shards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyServiceTest {
+
+	private static IdempotencyService service(IdempotencyStore store) {
+		return new IdempotencyService(store, new ObjectMapper(), Duration.ofSeconds(10), new SimpleMeterRegistry());
+	}
+
+	private static IdempotencyStore memoryStore() {
+		return new InMemoryIdempotencyStore(100, Duration.ofHours(1), new SimpleMeterRegistry());
+	}
+
+	private static ResponseEntity<Void> created(int id) {
+		return ResponseEntity.created(URI.create("/cashcards/" + id)).build();
+	}
+
+	@Test
+	public void shouldRunConcurrentDuplicatesOnce() throws Exception {
+		IdempotencyService service = service(memoryStore());
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<ResponseEntity<Void>>> responses = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			responses.add(executor.submit(() -> service.execute("sarah1", "POST /cashcards", "key-1", 100, () -> {
+				int run = runs.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return created(run);
+			})));
+		}
+		// let the duplicates queue behind the first run
+		Thread.sleep(200);
+		release.countDown();
+		for (Future<ResponseEntity<Void>> response : responses) {
+			assertThat(response.get(10, TimeUnit.SECONDS).getHeaders().getLocation()).isEqualTo(URI.create("/cashcards/1"));
+		}
+		executor.shutdown();
+		assertThat(runs.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldRunAgainAfterAFailureAndRejectAnotherBody() {
+		IdempotencyService service = service(memoryStore());
+		AtomicInteger runs = new AtomicInteger();
+		assertThatThrownBy(() -> service.execute("sarah1", "POST /cashcards", "key-1", 100, () -> {
+			runs.incrementAndGet();
+			throw new IllegalArgumentException("not found");
+		})).isInstanceOf(IllegalArgumentException.class);
+
+		ResponseEntity<Void> first = service.execute("sarah1", "POST /cashcards", "key-1", 100, () -> created(runs.incrementAndGet()));
+		ResponseEntity<Void> retry = service.execute("sarah1", "POST /cashcards", "key-1", 100, () -> created(runs.incrementAndGet()));
+		assertThat(runs.get()).isEqualTo(2);
+		assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(retry.getHeaders().getLocation()).isEqualTo(first.getHeaders().getLocation());
+		assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+
+		assertThatThrownBy(() -> service.execute("sarah1", "POST /cashcards", "key-1", 200, () -> created(runs.incrementAndGet())))
+				.isInstanceOf(IdempotencyKeyReusedException.class);
+		// another owner or another endpoint has its own keys
+		service.execute("kumar2", "POST /cashcards", "key-1", 100, () -> created(runs.incrementAndGet()));
+		service.execute("sarah1", "PUT /cashcards/bulk", "key-1", 100, () -> created(runs.incrementAndGet()));
+		assertThat(runs.get()).isEqualTo(4);
+	}
+
+	@Test
+	public void shouldReplayFromTheTableAfterARestart() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:idempotency;DB_CLOSE_DELAY=-1", "sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		AtomicInteger runs = new AtomicInteger();
+
+		service(new JdbcIdempotencyStore(jdbcTemplate, new Shards(List.of(), 1), transactionManager, Duration.ofHours(1)))
+				.execute("sarah1", "POST /cashcards", "key-1", 100, () -> created(runs.incrementAndGet()));
+		// a new instance, as after a restart
+		ResponseEntity<Void> retry = service(new JdbcIdempotencyStore(jdbcTemplate, new Shards(List.of(), 1), transactionManager, Duration.ofHours(1)))
+				.execute("sarah1", "POST /cashcards", "key-1", 100, () -> created(runs.incrementAndGet()));
+		assertThat(runs.get()).isEqualTo(1);
+		assertThat(retry.getHeaders().getLocation()).isEqualTo(URI.create("/cashcards/1"));
+
+		JdbcIdempotencyStore expired = new JdbcIdempotencyStore(jdbcTemplate, new Shards(List.of(), 1), transactionManager, Duration.ZERO);
+		assertThat(expired.find("sarah1\nPOST /cashcards\nkey-1")).isEmpty();
+		expired.purgeExpired();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key", Integer.class)).isZero();
+	}
+
+	@Test
+	public void shouldRollTheRequestBackWhenItsResponseCannotBeSaved() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:idempotency-rollback;DB_CLOSE_DELAY=-1", "sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		JdbcIdempotencyStore failingStore = new JdbcIdempotencyStore(jdbcTemplate, new Shards(List.of(), 1), transactionManager, Duration.ofHours(1)) {
+			@Override
+			public void save(String key, IdempotentResponse response) {
+				super.save(key, response);
+				throw new IllegalStateException("connection lost");
+			}
+		};
+		Supplier<ResponseEntity<Void>> create = () -> {
+			jdbcTemplate.update("INSERT INTO cash_card(id, amount, owner) VALUES (1, 100, 'sarah1')");
+			return created(1);
+		};
+
+		assertThatThrownBy(() -> service(failingStore).execute("sarah1", "POST /cashcards", "key-1", 100, create))
+				.isInstanceOf(IllegalStateException.class);
+		// neither the card nor the response were kept, the retry creates the card once
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cash_card", Integer.class)).isZero();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key", Integer.class)).isZero();
+
+		ResponseEntity<Void> retry = service(new JdbcIdempotencyStore(jdbcTemplate, new Shards(List.of(), 1), transactionManager, Duration.ofHours(1)))
+				.execute("sarah1", "POST /cashcards", "key-1", 100, create);
+		assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cash_card", Integer.class)).isEqualTo(1);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key", Integer.class)).isEqualTo(1);
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.cashcard.service;
+
+import com.example.cashcard.dto.BulkRequestReader;
+import com.example.cashcard.dto.CashCardBulkUpdateDTO;
+import com.example.cashcard.error.InvalidBulkRequestException;
+import com.example.cashcard.error.TooManyJobsException;
+import com.fasterxml.jackson.core.JsonFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BulkJobServiceTest {
+
+	private final List<Runnable> queued = new ArrayList<>();
+	private final List<List<Long>> deletedChunks = new ArrayList<>();
+	private final List<List<Long>> updatedChunks = new ArrayList<>();
+	private final List<Long> owned = new ArrayList<>(List.of(1L, 2L, 3L, 4L, 5L));
+
+	// only the calls made by the jobs are stubbed
+	private final CashCardService cashCardService = new CashCardService(null, null, null, null, null, null, null, 1000, 1024,
+			null, 1, Duration.ZERO) {
+		@Override
+		public boolean ownsAll(List<Long> distinctIds, String owner) {
+			return owned.containsAll(distinctIds);
+		}
+
+		@Override
+		public void bulkDeleteCashCard(List<Long> ids, String owner) {
+			deletedChunks.add(List.copyOf(ids));
+		}
+
+		@Override
+		public void bulkUpdate(List<CashCardBulkUpdateDTO> cashCardBulkUpdateDTOS, String owner) {
+			updatedChunks.add(cashCardBulkUpdateDTOS.stream().map(dto -> dto.getId() * 1000 + dto.getAmount()).toList());
+		}
+	};
+
+	// chunks of 2, at most 6 items, repeated ids spill to a file after 2 of them
+	private final BulkJobService bulkJobService = new BulkJobService(cashCardService, queued::add, 2, 6, 2, 2,
+			Duration.ofHours(1), new SimpleMeterRegistry());
+
+	private void runQueued() {
+		List<Runnable> tasks = new ArrayList<>(queued);
+		queued.clear();
+		tasks.forEach(Runnable::run);
+	}
+
+	private static BulkRequestReader reader(String body) {
+		try {
+			return new BulkRequestReader(new JsonFactory().createParser(body));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private BulkJob submitDelete(List<Long> ids, String owner) {
+		return bulkJobService.submitDelete(reader(ids.toString()), owner).orElseThrow();
+	}
+
+	@Test
+	public void shouldApplyAJobInChunksAndReportProgress() {
+		BulkJob job = submitDelete(List.of(1L, 2L, 3L, 3L, 4L, 5L), "sarah1");
+		assertThat(job.getStatus()).isEqualTo(BulkJob.Status.QUEUED);
+		assertThat(job.getTotal()).isEqualTo(6);
+
+		runQueued();
+		assertThat(deletedChunks).containsExactly(List.of(1L, 2L), List.of(3L), List.of(4L, 5L));
+		assertThat(job.getStatus()).isEqualTo(BulkJob.Status.SUCCEEDED);
+		assertThat(job.getProcessed()).isEqualTo(6);
+		assertThat(bulkJobService.find(job.getId(), "sarah1")).contains(job);
+		assertThat(bulkJobService.find(job.getId(), "kumar2")).isEmpty();
+	}
+
+	@Test
+	public void shouldDeleteAnIdRepeatedInALaterChunkOnce() {
+		BulkJob job = submitDelete(List.of(1L, 2L, 3L, 1L, 4L, 2L), "sarah1");
+		runQueued();
+		assertThat(deletedChunks).containsExactly(List.of(1L, 2L), List.of(3L), List.of(4L));
+		assertThat(job.getStatus()).isEqualTo(BulkJob.Status.SUCCEEDED);
+		assertThat(job.getProcessed()).isEqualTo(6);
+	}
+
+	@Test
+	public void shouldApplyTheUpdatesInTheOrderOfTheBody() {
+		BulkJob job = bulkJobService.submitUpdate(reader("[{\"id\":1,\"amount\":1},{\"id\":2,\"amount\":2},{\"id\":1,\"amount\":3}]"),
+				"sarah1").orElseThrow();
+		runQueued();
+		// amounts in minor units, the last amount of id 1 is applied last
+		assertThat(updatedChunks).containsExactly(List.of(1100L, 2200L), List.of(1300L));
+		assertThat(job.getStatus()).isEqualTo(BulkJob.Status.SUCCEEDED);
+		assertThat(job.getProcessed()).isEqualTo(3);
+	}
+
+	@Test
+	public void shouldNotDeleteAnythingWhenACardIsNotOwned() {
+		BulkJob job = submitDelete(List.of(1L, 2L, 3L, 99L), "sarah1");
+		runQueued();
+		assertThat(job.getStatus()).isEqualTo(BulkJob.Status.FAILED);
+		assertThat(job.getError()).contains("not owned");
+		assertThat(job.getProcessed()).isZero();
+		assertThat(deletedChunks).isEmpty();
+	}
+
+	@Test
+	public void shouldRejectABodyLongerThanTheMaximum() {
+		assertThatThrownBy(() -> submitDelete(List.of(1L, 2L, 3L, 4L, 5L, 1L, 2L), "sarah1"))
+				.isInstanceOf(InvalidBulkRequestException.class)
+				.hasMessageContaining("At most 6");
+		assertThat(bulkJobService.submitDelete(reader("[]"), "sarah1")).isEmpty();
+		assertThat(queued).isEmpty();
+
+		// neither took one of the owner's job slots
+		submitDelete(List.of(1L), "sarah1");
+		submitDelete(List.of(2L), "sarah1");
+		assertThat(queued).hasSize(2);
+	}
+
+	@Test
+	public void shouldBoundTheActiveJobsOfAnOwner() {
+		submitDelete(List.of(1L), "sarah1");
+		submitDelete(List.of(2L), "sarah1");
+		assertThatThrownBy(() -> submitDelete(List.of(3L), "sarah1"))
+				.isInstanceOf(TooManyJobsException.class);
+		// other owners are not affected
+		submitDelete(List.of(4L), "kumar2");
+
+		runQueued();
+		BulkJob next = submitDelete(List.of(3L), "sarah1");
+		assertThat(next.getStatus()).isEqualTo(BulkJob.Status.QUEUED);
+	}
+}
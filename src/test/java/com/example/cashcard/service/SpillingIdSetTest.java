@@ -0,0 +1,45 @@
+package com.example.cashcard.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpillingIdSetTest {
+
+	@Test
+	public void shouldFindTheIdsHeldInMemory() {
+		try (SpillingIdSet ids = new SpillingIdSet(100)) {
+			assertThat(ids.isEmpty()).isTrue();
+			ids.addAll(List.of(42L, 7L, 19L));
+
+			assertThat(ids.isEmpty()).isFalse();
+			assertThat(ids.contains(7L)).isTrue();
+			assertThat(ids.contains(42L)).isTrue();
+			assertThat(ids.contains(8L)).isFalse();
+			// ids added after a lookup are found too
+			ids.add(3L);
+			assertThat(ids.contains(3L)).isTrue();
+		}
+	}
+
+	@Test
+	public void shouldFindTheIdsSpilledToTheFile() {
+		try (SpillingIdSet ids = new SpillingIdSet(3)) {
+			// the 3000s and the 2000s are written to the file as two runs, the 1000s stay in memory
+			for (long id = 3000; id >= 1000; id -= 1000) {
+				ids.addAll(List.of(id + 5, id + 1, id + 3));
+			}
+
+			for (long id = 1000; id <= 3000; id += 1000) {
+				assertThat(ids.contains(id + 1)).isTrue();
+				assertThat(ids.contains(id + 3)).isTrue();
+				assertThat(ids.contains(id + 5)).isTrue();
+				assertThat(ids.contains(id + 2)).isFalse();
+			}
+			assertThat(ids.contains(0L)).isFalse();
+			assertThat(ids.contains(Long.MAX_VALUE)).isFalse();
+		}
+	}
+}